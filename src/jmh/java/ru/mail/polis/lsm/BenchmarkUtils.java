@@ -0,0 +1,63 @@
+package ru.mail.polis.lsm;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+
+final class BenchmarkUtils {
+
+    private static final long SIGN_BITS = 0x8080_8080_8080_8080L;
+
+    private BenchmarkUtils() {
+        // Only static methods
+    }
+
+    /**
+     * Key of {@code size} (at least {@link Long#BYTES}) bytes, ordered the same way as non-negative {@code index}.
+     * Index is written big-endian with the sign bit of every byte flipped, as keys are compared as signed bytes.
+     */
+    static ByteBuffer key(long index, int size) {
+        byte[] result = new byte[Math.max(size, Long.BYTES)];
+        Arrays.fill(result, (byte) '_');
+        ByteBuffer.wrap(result).putLong(index ^ SIGN_BITS);
+        return ByteBuffer.wrap(result);
+    }
+
+    static ByteBuffer value(long index, int size) {
+        byte[] result = new byte[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = (byte) ('A' + (index + i) % 26);
+        }
+        return ByteBuffer.wrap(result);
+    }
+
+    static DAO fill(Path dir, int records, int keySize, int valueSize) throws IOException {
+        DAO dao = DAOFactory.create(new DAOConfig(dir));
+        for (int i = 0; i < records; i++) {
+            dao.upsert(Record.of(key(i, keySize), value(i, valueSize)));
+        }
+        return dao;
+    }
+
+    static void recursiveDelete(Path path) throws IOException {
+        Files.walkFileTree(path,
+                new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                        Files.delete(file);
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                        Files.delete(dir);
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+    }
+}
@@ -0,0 +1,91 @@
+package ru.mail.polis.lsm;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Duration of flush on close, compaction and reopen. Every invocation gets freshly written data.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LifecycleBenchmark {
+
+    private static final int GENERATIONS = 10;
+
+    @Param({"100000"})
+    private int records;
+
+    @Param({"16"})
+    private int keySize;
+
+    @Param({"16", "1024"})
+    private int valueSize;
+
+    private Path dir;
+    private DAO dao;
+
+    /**
+     * Leaves {@link #GENERATIONS} overlapping flushed generations on disk and an open {@link DAO}
+     * with a full memtable.
+     */
+    @Setup(Level.Invocation)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("lifecycle");
+        for (int generation = 0; generation < GENERATIONS; generation++) {
+            BenchmarkUtils.fill(dir, records / GENERATIONS, keySize, valueSize).close();
+        }
+        dao = BenchmarkUtils.fill(dir, records, keySize, valueSize);
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() throws IOException {
+        if (dao != null) {
+            dao.close();
+        }
+        BenchmarkUtils.recursiveDelete(dir);
+    }
+
+    @Benchmark
+    public void flush() throws IOException {
+        dao.close();
+        dao = null;
+    }
+
+    @Benchmark
+    public void compact() {
+        dao.compact();
+    }
+
+    /**
+     * Only opening is measured: data is flushed by {@link Flushed} beforehand.
+     */
+    @Benchmark
+    public DAO reopen(Flushed flushed) throws IOException {
+        dao = DAOFactory.create(new DAOConfig(dir));
+        return dao;
+    }
+
+    @State(Scope.Thread)
+    public static class Flushed {
+        @Setup(Level.Invocation)
+        public void setUp(LifecycleBenchmark benchmark) throws IOException {
+            benchmark.dao.close();
+            benchmark.dao = null;
+        }
+    }
+
+}
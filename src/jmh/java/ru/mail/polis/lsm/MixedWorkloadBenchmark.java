@@ -0,0 +1,115 @@
+package ru.mail.polis.lsm;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * YCSB-like mixed workload over skewed keys.
+ * {@code workload} is one of YCSB core workloads: A (50% reads, 50% updates), B (95% reads),
+ * C (read only), E (95% short scans, 5% inserts of new keys after the loaded ones).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MixedWorkloadBenchmark {
+
+    private static final int SCAN_LENGTH = 50;
+
+    @Param({"A", "B", "C", "E"})
+    private String workload;
+
+    @Param({"100000"})
+    private int records;
+
+    @Param({"16"})
+    private int keySize;
+
+    @Param({"100"})
+    private int valueSize;
+
+    private Path dir;
+    private DAO dao;
+    private int readPercent;
+    private boolean scans;
+    // Next key to insert in workload E
+    private AtomicLong nextInsert;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        switch (workload) {
+            case "A":
+                readPercent = 50;
+                break;
+            case "B":
+            case "E":
+                readPercent = 95;
+                break;
+            case "C":
+                readPercent = 100;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown workload " + workload);
+        }
+        scans = "E".equals(workload);
+        nextInsert = new AtomicLong(records);
+
+        dir = Files.createTempDirectory("mixed");
+        BenchmarkUtils.fill(dir, records, keySize, valueSize).close();
+        dao = DAOFactory.create(new DAOConfig(dir));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        dao.close();
+        BenchmarkUtils.recursiveDelete(dir);
+    }
+
+    @Benchmark
+    public void operation(Blackhole blackhole) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextInt(100) >= readPercent) {
+            long index = scans ? nextInsert.getAndIncrement() : skewed(random);
+            dao.upsert(Record.of(BenchmarkUtils.key(index, keySize), BenchmarkUtils.value(index, valueSize)));
+            return;
+        }
+
+        ByteBuffer key = BenchmarkUtils.key(skewed(random), keySize);
+        if (scans) {
+            Iterator<Record> range = dao.range(key, null);
+            for (int i = 0; i < SCAN_LENGTH && range.hasNext(); i++) {
+                blackhole.consume(range.next());
+            }
+        } else {
+            Iterator<Record> range = dao.range(key, DAO.nextKey(key));
+            blackhole.consume(range.hasNext() ? range.next() : null);
+        }
+    }
+
+    /**
+     * Approximation of YCSB scrambled zipfian: 80% of requests hit 20% of keys, spread over the keyspace.
+     */
+    private long skewed(ThreadLocalRandom random) {
+        int hot = Math.max(records / 5, 1);
+        long rank = random.nextInt(100) < 80 ? random.nextInt(hot) : random.nextInt(records);
+        return Math.floorMod(rank * 0x9E3779B97F4A7C15L, records);
+    }
+
+}
@@ -0,0 +1,81 @@
+package ru.mail.polis.lsm;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read latency over data reopened from disk: point lookups, short ranges and full scans.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RangeBenchmark {
+
+    private static final int SHORT_RANGE = 10;
+
+    @Param({"100000"})
+    private int records;
+
+    @Param({"16", "64"})
+    private int keySize;
+
+    @Param({"16", "1024"})
+    private int valueSize;
+
+    private Path dir;
+    private DAO dao;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("range");
+        BenchmarkUtils.fill(dir, records, keySize, valueSize).close();
+        dao = DAOFactory.create(new DAOConfig(dir));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        dao.close();
+        BenchmarkUtils.recursiveDelete(dir);
+    }
+
+    @Benchmark
+    public Record point() {
+        ByteBuffer key = BenchmarkUtils.key(ThreadLocalRandom.current().nextInt(records), keySize);
+        return dao.range(key, DAO.nextKey(key)).next();
+    }
+
+    @Benchmark
+    public void shortRange(Blackhole blackhole) {
+        int from = ThreadLocalRandom.current().nextInt(records - SHORT_RANGE);
+        Iterator<Record> range = dao.range(
+                BenchmarkUtils.key(from, keySize),
+                BenchmarkUtils.key(from + SHORT_RANGE, keySize)
+        );
+        range.forEachRemaining(blackhole::consume);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void fullScan(Blackhole blackhole) {
+        dao.range(null, null).forEachRemaining(blackhole::consume);
+    }
+
+}
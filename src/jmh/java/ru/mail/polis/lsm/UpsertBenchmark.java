@@ -0,0 +1,62 @@
+package ru.mail.polis.lsm;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Upsert throughput, run with {@code -Pjmh.threads=N} to measure concurrent writers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class UpsertBenchmark {
+
+    @Param({"16", "64"})
+    private int keySize;
+
+    @Param({"16", "1024"})
+    private int valueSize;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private Path dir;
+    private DAO dao;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("upsert");
+        dao = DAOFactory.create(new DAOConfig(dir));
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        dao.close();
+        BenchmarkUtils.recursiveDelete(dir);
+    }
+
+    @Benchmark
+    public void sequential() {
+        long index = sequence.getAndIncrement();
+        dao.upsert(Record.of(BenchmarkUtils.key(index, keySize), BenchmarkUtils.value(index, valueSize)));
+    }
+
+    @Benchmark
+    public void random() {
+        long index = Long.reverse(sequence.getAndIncrement()) >>> 1;
+        dao.upsert(Record.of(BenchmarkUtils.key(index, keySize), BenchmarkUtils.value(index, valueSize)));
+    }
+
+}
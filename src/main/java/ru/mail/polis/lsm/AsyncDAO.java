@@ -0,0 +1,160 @@
+package ru.mail.polis.lsm;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Non-blocking facade over {@link DAO}.
+ * All disk work is done on the supplied I/O executor, callers never block.
+ */
+public class AsyncDAO implements Closeable {
+
+    private static final long CLOSE_TIMEOUT_SECONDS = 60;
+
+    private final DAO dao;
+    private final ExecutorService executor;
+
+    /**
+     * Create facade over {@code dao}. Facade owns both {@code dao} and {@code executor}
+     * and closes them in {@link #close()}.
+     */
+    public AsyncDAO(DAO dao, ExecutorService executor) {
+        this.dao = dao;
+        this.executor = executor;
+    }
+
+    public CompletableFuture<Void> upsert(Record record) {
+        return CompletableFuture.runAsync(() -> dao.upsert(record), executor);
+    }
+
+    /**
+     * Look up all {@code keys} in one I/O task, see {@link DAO#multiGet(List)}.
+     *
+     * @return records in the order of {@code keys}, {@code null} for absent keys
+     */
+    public CompletableFuture<List<Record>> get(List<ByteBuffer> keys) {
+        return CompletableFuture.supplyAsync(() -> dao.multiGet(keys), executor);
+    }
+
+    /**
+     * Publisher of {@link DAO#range} records. Records are read from disk only when requested by subscriber.
+     */
+    public Flow.Publisher<Record> range(@Nullable ByteBuffer fromKey, @Nullable ByteBuffer toKey) {
+        return subscriber -> subscriber.onSubscribe(new RangeSubscription(subscriber, fromKey, toKey));
+    }
+
+    @Override
+    public void close() throws IOException {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new IOException("Can't await termination of I/O executor");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing", e);
+        }
+        dao.close();
+    }
+
+    /**
+     * Drains range iterator on the I/O executor.
+     * At most one drain task is running at a time: it is scheduled only when demand grows from zero.
+     * All signals, including errors of {@link #request}, are delivered by the drain task.
+     */
+    private final class RangeSubscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super Record> subscriber;
+        private final ByteBuffer fromKey;
+        private final ByteBuffer toKey;
+        private final AtomicLong requested = new AtomicLong();
+
+        private volatile boolean done;
+        private volatile IllegalArgumentException error;
+        private Iterator<Record> iterator;
+
+        RangeSubscription(Flow.Subscriber<? super Record> subscriber,
+                          @Nullable ByteBuffer fromKey,
+                          @Nullable ByteBuffer toKey) {
+            this.subscriber = subscriber;
+            this.fromKey = fromKey;
+            this.toKey = toKey;
+        }
+
+        @Override
+        public void request(long n) {
+            if (done) {
+                return;
+            }
+            long demand = n;
+            if (demand <= 0) {
+                error = new IllegalArgumentException("Non-positive request: " + n);
+                // Wakes up the drain task to signal the error
+                demand = 1;
+            }
+            if (requested.getAndAccumulate(demand, AsyncDAO::addCapped) != 0) {
+                return;
+            }
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                done = true;
+                subscriber.onError(e);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            done = true;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (iterator == null) {
+                    iterator = dao.range(fromKey, toKey);
+                }
+                long demand = requested.get();
+                while (demand != 0) {
+                    long emitted = 0;
+                    while (emitted != demand) {
+                        if (done) {
+                            return;
+                        }
+                        if (error != null) {
+                            done = true;
+                            subscriber.onError(error);
+                            return;
+                        }
+                        if (!iterator.hasNext()) {
+                            done = true;
+                            subscriber.onComplete();
+                            return;
+                        }
+                        subscriber.onNext(iterator.next());
+                        emitted++;
+                    }
+                    demand = requested.addAndGet(-emitted);
+                }
+            } catch (RuntimeException e) {
+                done = true;
+                subscriber.onError(e);
+            }
+        }
+    }
+
+    private static long addCapped(long current, long n) {
+        long result = current + n;
+        return result < 0 ? Long.MAX_VALUE : result;
+    }
+
+}
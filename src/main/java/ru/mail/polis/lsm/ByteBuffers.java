@@ -0,0 +1,44 @@
+package ru.mail.polis.lsm;
+
+import java.nio.ByteBuffer;
+import java.util.Comparator;
+
+/**
+ * Allocation-free helpers for hot paths.
+ */
+final class ByteBuffers {
+
+    /**
+     * Same order as {@link ByteBuffer#compareTo}, which {@link DAO#nextKey} relies on.
+     */
+    static final Comparator<ByteBuffer> COMPARATOR = ByteBuffers::compare;
+
+    /**
+     * Order of records by key, does not copy key buffers.
+     */
+    static final Comparator<Record> RECORD_COMPARATOR = (a, b) -> compare(a.key(), b.key());
+
+    private ByteBuffers() {
+        // Only static methods
+    }
+
+    /**
+     * Lexicographic comparison of remaining bytes, equivalent to {@code a.compareTo(b)}.
+     * {@link ByteBuffer#mismatch} compares 8 bytes at a time and touches neither positions nor limits.
+     */
+    static int compare(ByteBuffer a, ByteBuffer b) {
+        int mismatch = a.mismatch(b);
+        if (mismatch < 0) {
+            return 0;
+        }
+        if (mismatch == a.remaining() || mismatch == b.remaining()) {
+            return a.remaining() - b.remaining();
+        }
+        return Byte.compare(a.get(a.position() + mismatch), b.get(b.position() + mismatch));
+    }
+
+    static int size(Record record) {
+        ByteBuffer value = record.value();
+        return record.key().remaining() + (value == null ? 0 : value.remaining());
+    }
+}
@@ -0,0 +1,99 @@
+package ru.mail.polis.lsm;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * File operations for checkpoints and backups of immutable database files.
+ */
+public final class Checkpoints {
+
+    private Checkpoints() {
+        // Only static methods
+    }
+
+    /**
+     * Hard link immutable {@code files} into {@code target}, copying those which can't be linked
+     * (e.g. {@code target} is on another file system).
+     */
+    public static void link(Collection<Path> files, Path target) throws IOException {
+        for (Path file : files) {
+            linkOrCopy(file, target.resolve(file.getFileName()));
+        }
+    }
+
+    /**
+     * Make a complete copy of {@code checkpoint} in {@code target} transferring only new files.
+     * Subdirectories (e.g. shards of {@link ShardedDAO} checkpoint) are copied recursively.
+     * Files which are also present in {@code previous} backup as the same file are linked from there,
+     * the rest is copied from {@code checkpoint}. Names alone are not trusted, as a rewritten database may reuse
+     * them: the same file has the same inode, or the same size and modification time (copies keep the latter).
+     *
+     * @param previous previous backup, {@code null} for the full one
+     * @return files copied from {@code checkpoint}
+     */
+    public static List<Path> incremental(Path checkpoint, @Nullable Path previous, Path target) throws IOException {
+        List<Path> copied = new ArrayList<>();
+        for (Path file : list(checkpoint)) {
+            Path relative = checkpoint.relativize(file);
+            Path destination = target.resolve(relative);
+            Files.createDirectories(destination.getParent());
+            Path old = previous == null ? null : previous.resolve(relative);
+            if (old != null && Files.isRegularFile(old) && sameFile(old, file)) {
+                linkOrCopy(old, destination);
+            } else {
+                copy(file, destination);
+                copied.add(file);
+            }
+        }
+        return copied;
+    }
+
+    /**
+     * Cheap identity check by file metadata, contents are not read.
+     * Backup copies keep modification time of their sources, so a file rewritten under the same name differs.
+     */
+    private static boolean sameFile(Path backup, Path file) throws IOException {
+        BasicFileAttributes backupAttributes = Files.readAttributes(backup, BasicFileAttributes.class);
+        BasicFileAttributes fileAttributes = Files.readAttributes(file, BasicFileAttributes.class);
+        Object fileKey = fileAttributes.fileKey();
+        if (fileKey != null && fileKey.equals(backupAttributes.fileKey())) {
+            return true;
+        }
+        return backupAttributes.size() == fileAttributes.size()
+                && backupAttributes.lastModifiedTime().equals(fileAttributes.lastModifiedTime());
+    }
+
+    private static List<Path> list(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+    }
+
+    private static void linkOrCopy(Path source, Path destination) throws IOException {
+        try {
+            Files.createLink(destination, source);
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            if (Files.exists(destination)) {
+                throw e;
+            }
+            copy(source, destination);
+        }
+    }
+
+    private static void copy(Path source, Path destination) throws IOException {
+        // Backup of a large database must not evict hot pages
+        DirectIO.copy(source, destination);
+        Files.setLastModifiedTime(destination, Files.getLastModifiedTime(source));
+    }
+
+}
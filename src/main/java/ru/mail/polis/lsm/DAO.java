@@ -2,9 +2,13 @@ package ru.mail.polis.lsm;
 
 import javax.annotation.Nullable;
 import java.io.Closeable;
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
 
 /**
  * Minimal database API.
@@ -12,10 +16,60 @@ import java.util.List;
 public interface DAO extends Closeable {
     Iterator<Record> range(@Nullable ByteBuffer fromKey, @Nullable ByteBuffer toKey);
 
+    /**
+     * Splittable version of {@link #range} for parallel streams.
+     * Every split part is scanned by its own {@link #range} iterator.
+     * Implementations should pass index boundaries and size estimate to {@link RangeSpliterator}.
+     */
+    default Spliterator<Record> spliterator(@Nullable ByteBuffer fromKey, @Nullable ByteBuffer toKey) {
+        return new RangeSpliterator(this, fromKey, toKey, List.of(), Long.MAX_VALUE);
+    }
+
     void upsert(Record record);
 
     void compact();
 
+    /**
+     * Write consistent copy of the database into empty directory {@code target},
+     * which can be opened with {@link DAOFactory#create}.
+     * Engines should flush memtable and hard link immutable files with {@link Checkpoints#link} instead
+     * of rewriting all records as this default does.
+     */
+    default void checkpoint(Path target) throws IOException {
+        try (DAO copy = DAOFactory.create(new DAOConfig(target))) {
+            range(null, null).forEachRemaining(copy::upsert);
+        }
+    }
+
+    /**
+     * Point lookup of many keys at once.
+     * Keys are probed in ascending order, so implementations may share index and block reads between them.
+     *
+     * @param keys keys to look up, may be unsorted and contain duplicates
+     * @return records in the order of {@code keys}, {@code null} for absent keys
+     */
+    default List<Record> multiGet(List<ByteBuffer> keys) {
+        Integer[] order = new Integer[keys.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> ByteBuffers.compare(keys.get(a), keys.get(b)));
+
+        Record[] result = new Record[order.length];
+        ByteBuffer previousKey = null;
+        Record previous = null;
+        for (int index : order) {
+            ByteBuffer key = keys.get(index);
+            if (!key.equals(previousKey)) {
+                Iterator<Record> range = range(key, nextKey(key));
+                previousKey = key;
+                previous = range.hasNext() ? range.next() : null;
+            }
+            result[index] = previous;
+        }
+        return Arrays.asList(result);
+    }
+
     /**
      * Appends {@code Byte.MIN_VALUE} to {@code buffer}.
      *
@@ -1,16 +1,41 @@
 package ru.mail.polis.lsm;
 
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
+import java.util.List;
 
 public class DAOConfig {
 
     private final Path dir;
+    private final List<Path> shardDirs;
+    private final List<ByteBuffer> splitKeys;
 
     public DAOConfig(Path dir) {
+        this(dir, List.of(), List.of());
+    }
+
+    /**
+     * Config of {@link ShardedDAO}.
+     *
+     * @param dir       directory of shard manifest
+     * @param shardDirs directories (e.g. on different disks) to place shards in
+     * @param splitKeys initial shard boundaries, used only when sharded database is created
+     */
+    public DAOConfig(Path dir, List<Path> shardDirs, List<ByteBuffer> splitKeys) {
         this.dir = dir;
+        this.shardDirs = List.copyOf(shardDirs);
+        this.splitKeys = List.copyOf(splitKeys);
     }
 
     public Path getDir() {
         return dir;
     }
+
+    public List<Path> getShardDirs() {
+        return shardDirs;
+    }
+
+    public List<ByteBuffer> getSplitKeys() {
+        return splitKeys;
+    }
 }
@@ -14,6 +14,12 @@ public final class DAOFactory {
     public static DAO create(DAOConfig config) throws IOException {
         assert config.getDir().toFile().exists();
 
+        if (!config.getShardDirs().isEmpty()
+                || !config.getSplitKeys().isEmpty()
+                || ShardedDAO.exists(config.getDir())) {
+            return ShardedDAO.open(config);
+        }
+
         throw new UnsupportedOperationException("Implement me");
     }
 
@@ -0,0 +1,127 @@
+package ru.mail.polis.lsm;
+
+import com.sun.nio.file.ExtendedOpenOption;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Bulk file I/O bypassing the OS page cache ({@code O_DIRECT}), for background work such as compaction
+ * and backups which would otherwise evict pages used by foreground reads.
+ *
+ * <p>Direct I/O requires buffers, positions and sizes aligned to the file system block size.
+ * Where it is not supported (e.g. tmpfs or non-Linux systems) buffered I/O is used instead.
+ */
+public final class DirectIO {
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private DirectIO() {
+        // Only static methods
+    }
+
+    /**
+     * Copy {@code source} to new file {@code target} with direct I/O if possible.
+     */
+    public static void copy(Path source, Path target) throws IOException {
+        int blockSize = blockSize(source, target);
+        FileChannel in = blockSize <= 0 ? null : openDirect(source, StandardOpenOption.READ);
+        if (in == null) {
+            Files.copy(source, target);
+            return;
+        }
+
+        try (in) {
+            FileChannel out = openDirect(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            if (out == null) {
+                Files.deleteIfExists(target);
+                Files.copy(source, target);
+                return;
+            }
+            try (out) {
+                copy(in, out, blockSize);
+            }
+        }
+    }
+
+    /**
+     * Copy with reads and writes aligned to {@code blockSize}, as required by direct I/O.
+     */
+    static void copy(FileChannel in, FileChannel out, int blockSize) throws IOException {
+        long size = in.size();
+        ByteBuffer buffer = allocate(BUFFER_SIZE, blockSize);
+        long position = 0;
+        while (position < size) {
+            buffer.clear();
+            do {
+                if (in.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("Source was truncated while copying");
+                }
+            } while (buffer.hasRemaining() && position + buffer.position() < size);
+
+            // Tail is padded to a whole block and cut off by truncate
+            int length = buffer.position();
+            buffer.limit(align(length, blockSize));
+            buffer.position(0);
+            while (buffer.hasRemaining()) {
+                out.write(buffer, position + buffer.position());
+            }
+            position += length;
+        }
+        out.truncate(size);
+    }
+
+    /**
+     * Buffer of {@code size} rounded up to {@code alignment} which starts at aligned address.
+     */
+    public static ByteBuffer allocate(int size, int alignment) {
+        return ByteBuffer.allocateDirect(align(size, alignment) + alignment)
+                .alignedSlice(alignment)
+                .limit(align(size, alignment));
+    }
+
+    /**
+     * Block size of both file systems, or {@code 0} if it is unknown.
+     */
+    private static int blockSize(Path source, Path target) {
+        try {
+            long blockSize = Math.max(
+                    Files.getFileStore(source).getBlockSize(),
+                    Files.getFileStore(target.toAbsolutePath().getParent()).getBlockSize()
+            );
+            return blockSize > BUFFER_SIZE ? 0 : (int) blockSize;
+        } catch (IOException | UnsupportedOperationException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Open file for direct I/O.
+     *
+     * @return {@code null} if file system does not support direct I/O
+     */
+    @Nullable
+    private static FileChannel openDirect(Path path, OpenOption... options) throws IOException {
+        OpenOption[] directOptions = Arrays.copyOf(options, options.length + 1);
+        directOptions[options.length] = ExtendedOpenOption.DIRECT;
+        try {
+            return FileChannel.open(path, directOptions);
+        } catch (FileAlreadyExistsException e) {
+            throw e;
+        } catch (IOException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    private static int align(int size, int alignment) {
+        return (size + alignment - 1) / alignment * alignment;
+    }
+
+}
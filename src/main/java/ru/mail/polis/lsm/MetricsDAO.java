@@ -0,0 +1,167 @@
+package ru.mail.polis.lsm;
+
+import javax.annotation.Nullable;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link DAO} decorator which measures every operation into {@link MetricsRegistry}.
+ * Latencies are recorded in nanoseconds, sizes in bytes.
+ *
+ * <p>Ranges are read lazily, so {@code range.open.latency} covers only {@link DAO#range} call,
+ * {@code range.first.latency} lasts until the first record is returned and {@code range.latency}
+ * until the iterator is exhausted. Ranges abandoned before their end are not counted in the latter.
+ */
+public class MetricsDAO implements DAO {
+
+    private final DAO delegate;
+    private final MetricsRegistry metrics;
+    @Nullable
+    private final ObjectName objectName;
+
+    private final Histogram upsertLatency;
+    private final LongAdder upsertBytes;
+    private final LongAdder tombstones;
+    private final Histogram rangeOpenLatency;
+    private final Histogram rangeFirstLatency;
+    private final Histogram rangeLatency;
+    private final LongAdder rangeRecords;
+    private final LongAdder rangeBytes;
+    private final Histogram multiGetLatency;
+    private final LongAdder multiGetKeys;
+    private final Histogram compactionDuration;
+
+    private MetricsDAO(DAO delegate, MetricsRegistry metrics, @Nullable ObjectName objectName) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.objectName = objectName;
+
+        upsertLatency = metrics.histogram("upsert.latency");
+        upsertBytes = metrics.counter("upsert.bytes");
+        tombstones = metrics.counter("upsert.tombstones");
+        rangeOpenLatency = metrics.histogram("range.open.latency");
+        rangeFirstLatency = metrics.histogram("range.first.latency");
+        rangeLatency = metrics.histogram("range.latency");
+        rangeRecords = metrics.counter("range.records");
+        rangeBytes = metrics.counter("range.bytes");
+        multiGetLatency = metrics.histogram("multiget.latency");
+        multiGetKeys = metrics.counter("multiget.keys");
+        compactionDuration = metrics.histogram("compaction.duration");
+    }
+
+    /**
+     * Wrap {@code delegate} without JMX registration.
+     */
+    public static MetricsDAO create(DAO delegate, MetricsRegistry metrics) {
+        return new MetricsDAO(delegate, metrics, null);
+    }
+
+    /**
+     * Wrap {@code delegate} and expose metrics in platform MBean server
+     * as {@code ru.mail.polis.lsm:type=DAO,name=<name>} until {@link #close()}.
+     */
+    public static MetricsDAO create(DAO delegate, MetricsRegistry metrics, String name) throws IOException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName objectName = new ObjectName("ru.mail.polis.lsm:type=DAO,name=" + ObjectName.quote(name));
+            server.registerMBean(metrics, objectName);
+            return new MetricsDAO(delegate, metrics, objectName);
+        } catch (JMException e) {
+            throw new IOException("Can't register metrics MBean " + name, e);
+        }
+    }
+
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public Iterator<Record> range(@Nullable ByteBuffer fromKey, @Nullable ByteBuffer toKey) {
+        long start = System.nanoTime();
+        Iterator<Record> range = delegate.range(fromKey, toKey);
+        rangeOpenLatency.record(System.nanoTime() - start);
+
+        return new Iterator<>() {
+            private boolean first = true;
+            private boolean exhausted;
+
+            @Override
+            public boolean hasNext() {
+                boolean hasNext = range.hasNext();
+                if (!hasNext && !exhausted) {
+                    exhausted = true;
+                    rangeLatency.record(System.nanoTime() - start);
+                }
+                return hasNext;
+            }
+
+            @Override
+            public Record next() {
+                Record record = range.next();
+                if (first) {
+                    first = false;
+                    rangeFirstLatency.record(System.nanoTime() - start);
+                }
+                rangeRecords.increment();
+                rangeBytes.add(ByteBuffers.size(record));
+                return record;
+            }
+        };
+    }
+
+    @Override
+    public void upsert(Record record) {
+        long start = System.nanoTime();
+        delegate.upsert(record);
+        upsertLatency.record(System.nanoTime() - start);
+
+        upsertBytes.add(ByteBuffers.size(record));
+        if (record.isTombstone()) {
+            tombstones.increment();
+        }
+    }
+
+    @Override
+    public List<Record> multiGet(List<ByteBuffer> keys) {
+        long start = System.nanoTime();
+        List<Record> result = delegate.multiGet(keys);
+        multiGetLatency.record(System.nanoTime() - start);
+
+        multiGetKeys.add(keys.size());
+        return result;
+    }
+
+    @Override
+    public void compact() {
+        long start = System.nanoTime();
+        delegate.compact();
+        compactionDuration.record(System.nanoTime() - start);
+    }
+
+    @Override
+    public void checkpoint(Path target) throws IOException {
+        delegate.checkpoint(target);
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            throw new IOException("Can't unregister metrics MBean " + objectName, e);
+        }
+    }
+
+}
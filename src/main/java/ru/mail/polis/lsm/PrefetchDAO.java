@@ -0,0 +1,75 @@
+package ru.mail.polis.lsm;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link DAO} decorator with adaptive readahead of {@link DAO#range} iterators on a background I/O pool.
+ * Long scans overlap reading with processing, point reads are not affected, see {@link PrefetchIterator}.
+ */
+public class PrefetchDAO implements DAO {
+
+    private static final long CLOSE_TIMEOUT_SECONDS = 60;
+
+    private final DAO delegate;
+    private final ExecutorService executor;
+    private final AtomicLong readaheadBudget;
+
+    /**
+     * Wrap {@code delegate}, which is closed together with {@code executor} in {@link #close()}.
+     *
+     * @param maxReadaheadBytes readahead limit shared by all iterators
+     */
+    public PrefetchDAO(DAO delegate, ExecutorService executor, long maxReadaheadBytes) {
+        this.delegate = delegate;
+        this.executor = executor;
+        this.readaheadBudget = new AtomicLong(maxReadaheadBytes);
+    }
+
+    @Override
+    public Iterator<Record> range(@Nullable ByteBuffer fromKey, @Nullable ByteBuffer toKey) {
+        return new PrefetchIterator(delegate.range(fromKey, toKey), executor, readaheadBudget);
+    }
+
+    @Override
+    public void upsert(Record record) {
+        delegate.upsert(record);
+    }
+
+    @Override
+    public List<Record> multiGet(List<ByteBuffer> keys) {
+        return delegate.multiGet(keys);
+    }
+
+    @Override
+    public void compact() {
+        delegate.compact();
+    }
+
+    @Override
+    public void checkpoint(Path target) throws IOException {
+        delegate.checkpoint(target);
+    }
+
+    @Override
+    public void close() throws IOException {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new IOException("Can't await termination of readahead executor");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing", e);
+        }
+        delegate.close();
+    }
+
+}
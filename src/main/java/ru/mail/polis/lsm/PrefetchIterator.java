@@ -0,0 +1,171 @@
+package ru.mail.polis.lsm;
+
+import java.lang.ref.Cleaner;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Iterator which reads the next batch of records on background executor while the current one is consumed.
+ *
+ * <p>Records are read synchronously until the first one is consumed, so point reads pay no readahead.
+ * Every consumed batch doubles the next one while there are enough free bytes in {@code budget}, which is
+ * shared by all iterators. Bytes of a batch are returned to the budget once it is consumed, or when an abandoned
+ * iterator is garbage collected. Without free bytes records are read synchronously one by one.
+ * The source iterator is never used by two threads at once: at most one batch is in flight.
+ */
+class PrefetchIterator implements Iterator<Record> {
+
+    private static final int MAX_BATCH_RECORDS = 1 << 16;
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final Iterator<Record> delegate;
+    private final Executor executor;
+    private final Reservation reservation;
+    private final Cleaner.Cleanable cleanable;
+
+    private int batchRecords = 1;
+    private boolean sequential;
+    private boolean exhausted;
+    private List<Record> batch = Collections.emptyList();
+    private long batchBytes;
+    private int index;
+    private CompletableFuture<List<Record>> prefetched;
+    private long prefetchedBytes;
+    // Size of the last read batch, written by readBatch and read after join
+    private long readBytes;
+
+    PrefetchIterator(Iterator<Record> delegate, Executor executor, AtomicLong budget) {
+        this.delegate = delegate;
+        this.executor = executor;
+        this.reservation = new Reservation(budget);
+        this.cleanable = CLEANER.register(this, reservation);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (index < batch.size()) {
+            return true;
+        }
+        reservation.release(batchBytes);
+        batchBytes = 0;
+        if (prefetched == null && exhausted) {
+            cleanable.clean();
+            return false;
+        }
+
+        if (prefetched == null) {
+            batch = readBatch(1, 0);
+        } else {
+            batch = join(prefetched);
+            batchBytes = Math.min(readBytes, prefetchedBytes);
+        }
+        index = 0;
+        prefetched = null;
+        prefetchedBytes = 0;
+        if (!exhausted && sequential) {
+            prefetch();
+        }
+        // Refilled once more after this one: more than a point read
+        sequential = true;
+        return index < batch.size();
+    }
+
+    @Override
+    public Record next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return batch.get(index++);
+    }
+
+    private void prefetch() {
+        // Twice as many records are expected to take twice as many bytes
+        long wanted = Math.max(readBytes, 1) * 2;
+        long granted = reservation.acquire(wanted);
+        if (granted == 0) {
+            return;
+        }
+        if (granted == wanted) {
+            batchRecords = Math.min(batchRecords * 2, MAX_BATCH_RECORDS);
+        }
+        int size = batchRecords;
+        prefetchedBytes = granted;
+        prefetched = CompletableFuture.supplyAsync(() -> {
+            List<Record> result = readBatch(size, granted);
+            // Bytes not used by a short batch are returned right away
+            reservation.release(granted - Math.min(readBytes, granted));
+            return result;
+        }, executor);
+    }
+
+    private List<Record> readBatch(int records, long maxBytes) {
+        List<Record> result = new ArrayList<>(Math.min(records, MAX_BATCH_RECORDS));
+        long bytes = 0;
+        while (result.size() < records && (result.isEmpty() || bytes < maxBytes)) {
+            if (!delegate.hasNext()) {
+                exhausted = true;
+                break;
+            }
+            Record record = delegate.next();
+            bytes += ByteBuffers.size(record);
+            result.add(record);
+        }
+        readBytes = bytes;
+        return result;
+    }
+
+    private static List<Record> join(CompletableFuture<List<Record>> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Bytes of a shared budget held by one iterator, returned to the budget when the iterator is cleaned.
+     */
+    private static final class Reservation implements Runnable {
+        private final AtomicLong budget;
+        private final AtomicLong held = new AtomicLong();
+
+        Reservation(AtomicLong budget) {
+            this.budget = budget;
+        }
+
+        /**
+         * Take up to {@code bytes} free bytes of the budget.
+         *
+         * @return taken bytes, {@code 0} if the budget is used up
+         */
+        long acquire(long bytes) {
+            long free = budget.getAndUpdate(available -> available - Math.max(Math.min(available, bytes), 0));
+            long granted = Math.max(Math.min(free, bytes), 0);
+            held.addAndGet(granted);
+            return granted;
+        }
+
+        void release(long bytes) {
+            if (bytes > 0) {
+                held.addAndGet(-bytes);
+                budget.addAndGet(bytes);
+            }
+        }
+
+        @Override
+        public void run() {
+            budget.addAndGet(held.getAndSet(0));
+        }
+    }
+
+}
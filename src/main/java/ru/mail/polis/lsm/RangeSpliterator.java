@@ -0,0 +1,197 @@
+package ru.mail.polis.lsm;
+
+import javax.annotation.Nullable;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator over {@link DAO#range} which splits by key into independent sub-ranges,
+ * so every part is read by its own {@link DAO#range} iterator.
+ *
+ * <p>Split points are taken from {@code boundaries} (e.g. SSTable index or block first keys) while
+ * there are any, then the key space between the first and the last stored keys is bisected.
+ * The last key of an unbounded range is found by probing {@link DAO#range} byte by byte.
+ */
+public class RangeSpliterator implements Spliterator<Record> {
+
+    private static final int CHARACTERISTICS = ORDERED | SORTED | DISTINCT | NONNULL;
+    private static final int DIGIT_MAX = 0xFF;
+    // Longer keys are not probed further, their prefix is good enough to bisect
+    private static final int MAX_PROBE_LENGTH = 32;
+
+    private final DAO dao;
+    private ByteBuffer fromKey;
+    @Nullable
+    private final ByteBuffer toKey;
+    private List<ByteBuffer> boundaries;
+    private long estimatedSize;
+    // Stored key close to the end of range, probed on the first blind split
+    @Nullable
+    private ByteBuffer lastKey;
+
+    private Iterator<Record> iterator;
+
+    /**
+     * Create spliterator over range {@code [fromKey, toKey)}.
+     *
+     * @param boundaries    sorted keys inside of range to split at, may be empty
+     * @param estimatedSize estimated number of records, {@link Long#MAX_VALUE} if unknown
+     */
+    public RangeSpliterator(DAO dao,
+                            @Nullable ByteBuffer fromKey,
+                            @Nullable ByteBuffer toKey,
+                            List<ByteBuffer> boundaries,
+                            long estimatedSize) {
+        this.dao = dao;
+        this.fromKey = fromKey == null ? ByteBuffer.allocate(0) : fromKey;
+        this.toKey = toKey;
+        this.boundaries = boundaries;
+        this.estimatedSize = estimatedSize;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Record> action) {
+        Iterator<Record> range = iterator();
+        if (!range.hasNext()) {
+            return false;
+        }
+        action.accept(range.next());
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super Record> action) {
+        iterator().forEachRemaining(action);
+    }
+
+    @Override
+    @Nullable
+    public Spliterator<Record> trySplit() {
+        if (iterator != null) {
+            return null;
+        }
+
+        ByteBuffer splitKey;
+        List<ByteBuffer> prefixBoundaries;
+        if (boundaries.isEmpty()) {
+            // Bisect stored keys only, not the whole key space
+            Iterator<Record> first = dao.range(fromKey, toKey);
+            if (!first.hasNext()) {
+                return null;
+            }
+            fromKey = first.next().getKey();
+            if (lastKey == null) {
+                lastKey = toKey == null ? lastKey(dao) : toKey;
+            }
+            splitKey = midpoint(fromKey, lastKey);
+            if (splitKey == null) {
+                return null;
+            }
+            prefixBoundaries = List.of();
+        } else {
+            int middle = boundaries.size() / 2;
+            splitKey = boundaries.get(middle);
+            prefixBoundaries = boundaries.subList(0, middle);
+            boundaries = boundaries.subList(middle + 1, boundaries.size());
+        }
+
+        // Halved even if unknown, otherwise streams never stop bisecting
+        estimatedSize /= 2;
+        RangeSpliterator prefix = new RangeSpliterator(dao, fromKey, splitKey, prefixBoundaries, estimatedSize);
+        // This spliterator continues with the suffix
+        fromKey = splitKey;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return estimatedSize;
+    }
+
+    @Override
+    public int characteristics() {
+        return CHARACTERISTICS;
+    }
+
+    @Override
+    public Comparator<? super Record> getComparator() {
+        return ByteBuffers.RECORD_COMPARATOR;
+    }
+
+    private Iterator<Record> iterator() {
+        if (iterator == null) {
+            iterator = dao.range(fromKey, toKey);
+        }
+        return iterator;
+    }
+
+    /**
+     * Key strictly between {@code from} and {@code to}, keys are treated as base 256 fractions.
+     *
+     * @return {@code null} if there is no key to split at
+     */
+    @Nullable
+    static ByteBuffer midpoint(ByteBuffer from, ByteBuffer to) {
+        int length = Math.max(from.remaining(), to.remaining()) + 1;
+        BigInteger low = toNumber(from, length);
+        BigInteger high = toNumber(to, length);
+
+        byte[] digits = low.add(high).shiftRight(1).toByteArray();
+        byte[] result = new byte[length];
+        int copied = Math.min(digits.length, length);
+        System.arraycopy(digits, digits.length - copied, result, length - copied, copied);
+        for (int i = 0; i < length; i++) {
+            result[i] += Byte.MIN_VALUE;
+        }
+
+        ByteBuffer middle = ByteBuffer.wrap(result);
+        if (ByteBuffers.compare(from, middle) >= 0 || ByteBuffers.compare(middle, to) >= 0) {
+            return null;
+        }
+        return middle;
+    }
+
+    /**
+     * The last stored key or its prefix of {@link #MAX_PROBE_LENGTH} bytes.
+     * Every byte is the greatest one which some key starts with after the already found prefix.
+     */
+    static ByteBuffer lastKey(DAO dao) {
+        byte[] prefix = new byte[MAX_PROBE_LENGTH];
+        int length = 0;
+        while (length < MAX_PROBE_LENGTH) {
+            int low = Byte.MIN_VALUE;
+            int high = Byte.MAX_VALUE;
+            boolean found = false;
+            while (low <= high) {
+                int digit = (low + high) >> 1;
+                prefix[length] = (byte) digit;
+                if (dao.range(ByteBuffer.wrap(prefix, 0, length + 1), null).hasNext()) {
+                    found = true;
+                    low = digit + 1;
+                } else {
+                    high = digit - 1;
+                }
+            }
+            if (!found) {
+                // No longer key with this prefix, prefix is the last key itself
+                break;
+            }
+            prefix[length++] = (byte) high;
+        }
+        return ByteBuffer.wrap(prefix, 0, length).slice();
+    }
+
+    private static BigInteger toNumber(ByteBuffer key, int length) {
+        byte[] digits = new byte[length + 1];
+        for (int i = 0; i < key.remaining(); i++) {
+            digits[i + 1] = (byte) ((key.get(key.position() + i) - Byte.MIN_VALUE) & DIGIT_MAX);
+        }
+        return new BigInteger(digits);
+    }
+
+}
@@ -6,16 +6,38 @@ import java.nio.ByteBuffer;
 @SuppressWarnings("JavaLangClash")
 public class Record {
 
+    /**
+     * Expiration time of records written without TTL.
+     */
+    public static final long NEVER_EXPIRES = Long.MAX_VALUE;
+
     private final ByteBuffer key;
     private final ByteBuffer value;
+    private final long expireTime;
 
     Record(ByteBuffer key, @Nullable ByteBuffer value) {
+        this(key, value, NEVER_EXPIRES);
+    }
+
+    Record(ByteBuffer key, @Nullable ByteBuffer value, long expireTime) {
         this.key = key.asReadOnlyBuffer();
         this.value = value == null ? null : value.asReadOnlyBuffer();
+        this.expireTime = expireTime;
     }
 
     public static Record of(ByteBuffer key, ByteBuffer value) {
-        return new Record(key.asReadOnlyBuffer(), value.asReadOnlyBuffer());
+        return new Record(key, value);
+    }
+
+    /**
+     * Create a record which disappears from the database at {@code expireTime}.
+     * Once expired, the record acts as a tombstone: it is not returned by {@link DAO#range} and hides older
+     * values of the key. So it is removed only when nothing older can be behind it, i.e. by full compaction.
+     *
+     * @param expireTime expiration time in milliseconds since epoch (see {@link System#currentTimeMillis()})
+     */
+    public static Record of(ByteBuffer key, ByteBuffer value, long expireTime) {
+        return new Record(key, value, expireTime);
     }
 
     public static Record tombstone(ByteBuffer key) {
@@ -30,8 +52,34 @@ public class Record {
         return value == null ? null : value.asReadOnlyBuffer();
     }
 
+    /**
+     * Key without defensive copy. Callers must not change its position or limit.
+     */
+    ByteBuffer key() {
+        return key;
+    }
+
+    /**
+     * Value without defensive copy. Callers must not change its position or limit.
+     */
+    @Nullable
+    ByteBuffer value() {
+        return value;
+    }
+
     public boolean isTombstone() {
         return value == null;
     }
 
+    /**
+     * Expiration time in milliseconds since epoch, {@link #NEVER_EXPIRES} if record has no TTL.
+     */
+    public long getExpireTime() {
+        return expireTime;
+    }
+
+    public boolean isExpired(long now) {
+        return expireTime <= now;
+    }
+
 }
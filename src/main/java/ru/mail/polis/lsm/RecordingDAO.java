@@ -0,0 +1,322 @@
+package ru.mail.polis.lsm;
+
+import javax.annotation.Nullable;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link DAO} decorator which records the operation stream into a trace (see {@link TraceFormat})
+ * to be replayed later by {@link TraceReplayer}. Record values are not stored, only their sizes.
+ *
+ * <p>Every calling thread is recorded as a separate stream into its own buffer, so recording threads do not
+ * contend with each other. A full buffer is appended to the trace as one chunk. A range is recorded with
+ * the number of records actually read when its iterator is exhausted, garbage collected or this DAO is closed.
+ */
+public class RecordingDAO implements DAO {
+
+    private static final Cleaner CLEANER = Cleaner.create();
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final DAO delegate;
+    private final DataOutputStream trace;
+    private final long created;
+    private final AtomicLong nextStream = new AtomicLong();
+    private final Set<StreamBuffer> streams = ConcurrentHashMap.newKeySet();
+    private final ThreadLocal<StreamBuffer> stream = ThreadLocal.withInitial(this::newStream);
+    private final Set<RangeEntry> openRanges = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+
+    private RecordingDAO(DAO delegate, DataOutputStream trace, long created) {
+        this.delegate = delegate;
+        this.trace = trace;
+        this.created = created;
+    }
+
+    /**
+     * Wrap {@code delegate} writing trace into new file {@code trace}.
+     */
+    public static RecordingDAO create(DAO delegate, Path trace) throws IOException {
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(trace, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)));
+        output.writeInt(TraceFormat.MAGIC);
+        output.writeInt(TraceFormat.VERSION);
+        return new RecordingDAO(delegate, output, System.nanoTime());
+    }
+
+    @Override
+    public Iterator<Record> range(@Nullable ByteBuffer fromKey, @Nullable ByteBuffer toKey) {
+        long start = System.nanoTime();
+        Iterator<Record> range = delegate.range(fromKey, toKey);
+
+        RangeEntry entry = new RangeEntry(stream.get(), start, copy(fromKey), copy(toKey));
+        openRanges.add(entry);
+        RecordedIterator iterator = new RecordedIterator(range, entry);
+        iterator.cleanable = CLEANER.register(iterator, entry);
+        return iterator;
+    }
+
+    @Override
+    public void upsert(Record record) {
+        long start = System.nanoTime();
+        delegate.upsert(record);
+        long duration = System.nanoTime() - start;
+
+        StreamBuffer buffer = stream.get();
+        synchronized (buffer) {
+            if (closed) {
+                return;
+            }
+            try {
+                DataOutputStream output;
+                if (record.isTombstone()) {
+                    output = buffer.begin(TraceFormat.TOMBSTONE, start, duration);
+                } else {
+                    output = buffer.begin(TraceFormat.UPSERT, start, duration);
+                    TraceFormat.writeVarLong(output, record.value().remaining());
+                    long expireTime = record.getExpireTime();
+                    TraceFormat.writeVarLong(output, expireTime == Record.NEVER_EXPIRES
+                            ? 0
+                            : Math.max(expireTime - System.currentTimeMillis(), 0) + 1);
+                }
+                TraceFormat.writeKey(output, record.key());
+                buffer.end();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    @Override
+    public List<Record> multiGet(List<ByteBuffer> keys) {
+        long start = System.nanoTime();
+        List<Record> result = delegate.multiGet(keys);
+        long duration = System.nanoTime() - start;
+
+        StreamBuffer buffer = stream.get();
+        synchronized (buffer) {
+            if (closed) {
+                return result;
+            }
+            try {
+                DataOutputStream output = buffer.begin(TraceFormat.MULTI_GET, start, duration);
+                TraceFormat.writeVarLong(output, keys.size());
+                for (ByteBuffer key : keys) {
+                    TraceFormat.writeKey(output, key);
+                }
+                buffer.end();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void compact() {
+        long start = System.nanoTime();
+        delegate.compact();
+        long duration = System.nanoTime() - start;
+
+        StreamBuffer buffer = stream.get();
+        synchronized (buffer) {
+            if (closed) {
+                return;
+            }
+            try {
+                buffer.begin(TraceFormat.COMPACT, start, duration);
+                buffer.end();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    @Override
+    public void checkpoint(Path target) throws IOException {
+        delegate.checkpoint(target);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            delegate.close();
+        } finally {
+            try {
+                // Ranges still being read are recorded with records read so far
+                for (RangeEntry entry : new ArrayList<>(openRanges)) {
+                    entry.run();
+                }
+            } finally {
+                closed = true;
+                try {
+                    for (StreamBuffer buffer : streams) {
+                        synchronized (buffer) {
+                            buffer.flush();
+                        }
+                    }
+                } finally {
+                    synchronized (trace) {
+                        trace.close();
+                    }
+                }
+            }
+        }
+    }
+
+    private StreamBuffer newStream() {
+        StreamBuffer buffer = new StreamBuffer(nextStream.getAndIncrement(), created);
+        streams.add(buffer);
+        return buffer;
+    }
+
+    @Nullable
+    private static ByteBuffer copy(@Nullable ByteBuffer key) {
+        if (key == null) {
+            return null;
+        }
+        ByteBuffer result = ByteBuffer.allocate(key.remaining());
+        result.put(key.duplicate());
+        return result.flip();
+    }
+
+    /**
+     * Entries of one stream not yet written to trace. Guarded by itself, which is contended only on close.
+     */
+    private final class StreamBuffer {
+        final long id;
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(CHUNK_SIZE);
+        final DataOutputStream output = new DataOutputStream(bytes);
+        long lastStart;
+
+        StreamBuffer(long id, long created) {
+            this.id = id;
+            this.lastStart = created;
+        }
+
+        /**
+         * Write entry header, arguments are written to the returned output.
+         */
+        DataOutputStream begin(byte opcode, long start, long duration) throws IOException {
+            output.writeByte(opcode);
+            // Ranges are written when done, not in order of their start
+            TraceFormat.writeSignedVarLong(output, start - lastStart);
+            TraceFormat.writeVarLong(output, duration);
+            lastStart = start;
+            return output;
+        }
+
+        void end() throws IOException {
+            if (bytes.size() >= CHUNK_SIZE) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            if (bytes.size() == 0) {
+                return;
+            }
+            synchronized (trace) {
+                TraceFormat.writeVarLong(trace, id);
+                TraceFormat.writeVarLong(trace, bytes.size());
+                bytes.writeTo(trace);
+            }
+            bytes.reset();
+        }
+    }
+
+    /**
+     * Range being read, written to trace once. Must not reference its iterator to be run by {@link Cleaner}.
+     */
+    private final class RangeEntry implements Runnable {
+        final StreamBuffer buffer;
+        final long start;
+        @Nullable
+        final ByteBuffer fromKey;
+        @Nullable
+        final ByteBuffer toKey;
+        // Updated by reading thread only, records are published by the following write of end
+        long records;
+        volatile long end;
+        // Guarded by buffer
+        boolean written;
+
+        RangeEntry(StreamBuffer buffer, long start, @Nullable ByteBuffer fromKey, @Nullable ByteBuffer toKey) {
+            this.buffer = buffer;
+            this.start = start;
+            this.fromKey = fromKey;
+            this.toKey = toKey;
+            this.end = start;
+        }
+
+        @Override
+        public void run() {
+            openRanges.remove(this);
+            synchronized (buffer) {
+                if (written || closed) {
+                    return;
+                }
+                written = true;
+                long duration = end - start;
+                try {
+                    DataOutputStream output = buffer.begin(TraceFormat.RANGE, start, duration);
+                    output.writeByte((fromKey == null ? 0 : TraceFormat.HAS_FROM)
+                            | (toKey == null ? 0 : TraceFormat.HAS_TO));
+                    if (fromKey != null) {
+                        TraceFormat.writeKey(output, fromKey);
+                    }
+                    if (toKey != null) {
+                        TraceFormat.writeKey(output, toKey);
+                    }
+                    TraceFormat.writeVarLong(output, records);
+                    buffer.end();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+
+    private static final class RecordedIterator implements Iterator<Record> {
+        private final Iterator<Record> delegate;
+        private final RangeEntry entry;
+        private Cleaner.Cleanable cleanable;
+
+        RecordedIterator(Iterator<Record> delegate, RangeEntry entry) {
+            this.delegate = delegate;
+            this.entry = entry;
+        }
+
+        @Override
+        public boolean hasNext() {
+            boolean hasNext = delegate.hasNext();
+            if (!hasNext) {
+                entry.end = System.nanoTime();
+                cleanable.clean();
+            }
+            return hasNext;
+        }
+
+        @Override
+        public Record next() {
+            Record record = delegate.next();
+            entry.records++;
+            entry.end = System.nanoTime();
+            return record;
+        }
+    }
+
+}
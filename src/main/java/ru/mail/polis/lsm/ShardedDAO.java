@@ -0,0 +1,460 @@
+package ru.mail.polis.lsm;
+
+import javax.annotation.Nullable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * {@link DAO} which range-partitions the key space over independent {@link DAO} instances (shards),
+ * each with its own memtable, flushes and compaction, possibly on different disks.
+ *
+ * <p>Shard {@code i} owns keys {@code [lowerBound(i), lowerBound(i + 1))}; the list of shards is kept in
+ * manifest file in {@link DAOConfig#getDir()}. Every shard read is clipped to the shard bounds, so records
+ * left in a shard after its split are invisible until {@link #compact()} removes them.
+ */
+public class ShardedDAO implements DAO {
+
+    private static final String MANIFEST = "shards";
+    private static final String MANIFEST_TMP = "shards.tmp";
+    private static final String SHARD_PREFIX = "shard";
+    private static final ByteBuffer MIN_KEY = ByteBuffer.allocate(0);
+
+    private final Path dir;
+    private final List<Path> homes;
+
+    // Sorted by lower bound, the first one starts at MIN_KEY. Replaced as a whole on split
+    private volatile Shard[] shards;
+    // Guarded by this
+    private int nextId;
+
+    private ShardedDAO(Path dir, List<Path> homes, Shard[] shards, int nextId) {
+        this.dir = dir;
+        this.homes = homes;
+        this.shards = shards;
+        this.nextId = nextId;
+    }
+
+    static boolean exists(Path dir) {
+        return Files.exists(dir.resolve(MANIFEST));
+    }
+
+    /**
+     * Open sharded database in {@code config.getDir()} or create it with {@code config.getSplitKeys()}.
+     */
+    public static ShardedDAO open(DAOConfig config) throws IOException {
+        Path dir = config.getDir();
+        List<Path> homes = config.getShardDirs().isEmpty() ? List.of(dir) : config.getShardDirs();
+
+        List<ShardInfo> infos;
+        int nextId;
+        if (exists(dir)) {
+            try (DataInputStream input = new DataInputStream(Files.newInputStream(dir.resolve(MANIFEST)))) {
+                nextId = input.readInt();
+                int count = input.readInt();
+                infos = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    int id = input.readInt();
+                    Path path = dir.resolve(input.readUTF());
+                    byte[] lowerBound = new byte[input.readInt()];
+                    input.readFully(lowerBound);
+                    infos.add(new ShardInfo(id, path, ByteBuffer.wrap(lowerBound)));
+                }
+            }
+        } else {
+            TreeSet<ByteBuffer> lowerBounds = new TreeSet<>(ByteBuffers.COMPARATOR);
+            lowerBounds.add(MIN_KEY);
+            config.getSplitKeys().forEach(key -> lowerBounds.add(copy(key)));
+
+            infos = new ArrayList<>(lowerBounds.size());
+            for (ByteBuffer lowerBound : lowerBounds) {
+                int id = infos.size();
+                Path path = homes.get(id % homes.size()).resolve(SHARD_PREFIX + id);
+                Files.createDirectories(path);
+                infos.add(new ShardInfo(id, path, lowerBound));
+            }
+            nextId = infos.size();
+            writeManifest(dir, nextId, infos);
+        }
+
+        Shard[] shards = new Shard[infos.size()];
+        try {
+            for (int i = 0; i < shards.length; i++) {
+                ShardInfo info = infos.get(i);
+                shards[i] = new Shard(info, DAOFactory.create(new DAOConfig(info.path)));
+            }
+        } catch (IOException | RuntimeException e) {
+            for (Shard shard : shards) {
+                if (shard != null) {
+                    closeSuppressed(shard.dao, e);
+                }
+            }
+            throw e;
+        }
+        return new ShardedDAO(dir, homes, shards, nextId);
+    }
+
+    @Override
+    public Iterator<Record> range(@Nullable ByteBuffer fromKey, @Nullable ByteBuffer toKey) {
+        Shard[] current = shards;
+        int first = fromKey == null ? 0 : route(current, fromKey);
+        List<Iterator<Record>> iterators = new ArrayList<>();
+        for (int i = first; i < current.length; i++) {
+            Shard shard = current[i];
+            if (toKey != null && ByteBuffers.compare(shard.info.lowerBound, toKey) >= 0) {
+                break;
+            }
+            ByteBuffer from = i > 0 && (fromKey == null || ByteBuffers.compare(fromKey, shard.info.lowerBound) < 0)
+                    ? shard.info.lowerBound.asReadOnlyBuffer()
+                    : fromKey;
+            ByteBuffer upperBound = upperBound(current, i);
+            ByteBuffer to = upperBound != null && (toKey == null || ByteBuffers.compare(upperBound, toKey) < 0)
+                    ? upperBound.asReadOnlyBuffer()
+                    : toKey;
+            iterators.add(shard.dao.range(from, to));
+        }
+        return new ConcatIterator(iterators);
+    }
+
+    /**
+     * Splits at shard boundaries first, so parallel scans read different shards.
+     */
+    @Override
+    public Spliterator<Record> spliterator(@Nullable ByteBuffer fromKey, @Nullable ByteBuffer toKey) {
+        Shard[] current = shards;
+        List<ByteBuffer> boundaries = new ArrayList<>();
+        for (int i = 1; i < current.length; i++) {
+            ByteBuffer lowerBound = current[i].info.lowerBound;
+            if ((fromKey == null || ByteBuffers.compare(fromKey, lowerBound) < 0)
+                    && (toKey == null || ByteBuffers.compare(lowerBound, toKey) < 0)) {
+                boundaries.add(lowerBound.asReadOnlyBuffer());
+            }
+        }
+        return new RangeSpliterator(this, fromKey, toKey, boundaries, Long.MAX_VALUE);
+    }
+
+    @Override
+    public void upsert(Record record) {
+        while (true) {
+            Shard[] current = shards;
+            Shard shard = current[route(current, record.key())];
+            Lock lock = shard.lock.readLock();
+            lock.lock();
+            try {
+                // Shard is not being split, so routing is still valid
+                if (current == shards) {
+                    shard.dao.upsert(record);
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public List<Record> multiGet(List<ByteBuffer> keys) {
+        Shard[] current = shards;
+        List<List<Integer>> indexes = new ArrayList<>(current.length);
+        for (int i = 0; i < current.length; i++) {
+            indexes.add(new ArrayList<>());
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            indexes.get(route(current, keys.get(i))).add(i);
+        }
+
+        Record[] result = new Record[keys.size()];
+        for (int i = 0; i < current.length; i++) {
+            List<Integer> shardIndexes = indexes.get(i);
+            if (shardIndexes.isEmpty()) {
+                continue;
+            }
+            List<ByteBuffer> shardKeys = new ArrayList<>(shardIndexes.size());
+            shardIndexes.forEach(index -> shardKeys.add(keys.get(index)));
+            List<Record> records = current[i].dao.multiGet(shardKeys);
+            for (int j = 0; j < records.size(); j++) {
+                result[shardIndexes.get(j)] = records.get(j);
+            }
+        }
+        return Arrays.asList(result);
+    }
+
+    /**
+     * Remove records moved out of every shard by {@link #split} and compact shards in parallel
+     * on a dedicated pool, as compaction blocks on disk I/O.
+     */
+    @Override
+    public void compact() {
+        Shard[] current = shards;
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(current.length, Runtime.getRuntime().availableProcessors()));
+        try {
+            List<Future<?>> futures = new ArrayList<>(current.length);
+            for (int i = 0; i < current.length; i++) {
+                int index = i;
+                futures.add(executor.submit(() -> compact(current, index)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while compacting", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException("Can't compact shard", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void compact(Shard[] current, int index) {
+        DAO dao = current[index].dao;
+        ByteBuffer upperBound = upperBound(current, index);
+        if (index > 0) {
+            dao.range(null, current[index].info.lowerBound)
+                    .forEachRemaining(record -> dao.upsert(Record.tombstone(record.getKey())));
+        }
+        if (upperBound != null) {
+            dao.range(upperBound, null)
+                    .forEachRemaining(record -> dao.upsert(Record.tombstone(record.getKey())));
+        }
+        dao.compact();
+    }
+
+    /**
+     * Split the shard containing {@code splitKey} at it, moving its upper part to a new shard in the least
+     * occupied shard directory. Only writes to the shard being split wait for the move. The new shard is closed
+     * (so flushed) and reopened before the manifest refers to it, so a crash never loses moved records.
+     */
+    public synchronized void split(ByteBuffer splitKey) throws IOException {
+        Shard[] current = shards;
+        int index = route(current, splitKey);
+        Shard shard = current[index];
+        if (shard.info.lowerBound.equals(splitKey)) {
+            return;
+        }
+
+        // Never reuse ids, directory of a failed split may be left behind
+        int id = nextId++;
+        Path path = leastOccupiedHome(current).resolve(SHARD_PREFIX + id);
+        Files.createDirectories(path);
+        ShardInfo info = new ShardInfo(id, path, copy(splitKey));
+
+        Lock lock = shard.lock.writeLock();
+        lock.lock();
+        try {
+            // Moved records must be on disk before the manifest routes their reads to the new shard
+            try (DAO moved = DAOFactory.create(new DAOConfig(path))) {
+                shard.dao.range(info.lowerBound, upperBound(current, index)).forEachRemaining(moved::upsert);
+            }
+            Shard created = new Shard(info, DAOFactory.create(new DAOConfig(path)));
+
+            List<Shard> updated = new ArrayList<>(Arrays.asList(current));
+            updated.add(index + 1, created);
+            try {
+                writeManifest(dir, nextId, infos(updated));
+            } catch (IOException | RuntimeException e) {
+                closeSuppressed(created.dao, e);
+                throw e;
+            }
+            shards = updated.toArray(new Shard[0]);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Checkpoint every shard into a subdirectory of {@code target}, which becomes a sharded database itself.
+     * Writes to all shards wait until every shard is checkpointed, so the copy is taken at a single point in time.
+     */
+    @Override
+    public synchronized void checkpoint(Path target) throws IOException {
+        Shard[] current = shards;
+        List<ShardInfo> infos = new ArrayList<>(current.length);
+        int locked = 0;
+        try {
+            for (Shard shard : current) {
+                shard.lock.writeLock().lock();
+                locked++;
+            }
+            for (Shard shard : current) {
+                Path path = target.resolve(SHARD_PREFIX + shard.info.id);
+                Files.createDirectory(path);
+                shard.dao.checkpoint(path);
+                infos.add(new ShardInfo(shard.info.id, path, shard.info.lowerBound));
+            }
+        } finally {
+            for (int i = 0; i < locked; i++) {
+                current[i].lock.writeLock().unlock();
+            }
+        }
+        writeManifest(target, nextId, infos);
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException exception = null;
+        for (Shard shard : shards) {
+            try {
+                shard.dao.close();
+            } catch (IOException e) {
+                if (exception == null) {
+                    exception = e;
+                } else {
+                    exception.addSuppressed(e);
+                }
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    private Path leastOccupiedHome(Shard[] current) {
+        Path result = homes.get(0);
+        long min = Long.MAX_VALUE;
+        for (Path home : homes) {
+            long count = Arrays.stream(current).filter(shard -> home.equals(shard.info.path.getParent())).count();
+            if (count < min) {
+                min = count;
+                result = home;
+            }
+        }
+        return result;
+    }
+
+    private static int route(Shard[] current, ByteBuffer key) {
+        int low = 1;
+        int high = current.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int compare = ByteBuffers.compare(current[mid].info.lowerBound, key);
+            if (compare <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low - 1;
+    }
+
+    @Nullable
+    private static ByteBuffer upperBound(Shard[] current, int index) {
+        return index + 1 < current.length ? current[index + 1].info.lowerBound : null;
+    }
+
+    private static List<ShardInfo> infos(List<Shard> shards) {
+        List<ShardInfo> result = new ArrayList<>(shards.size());
+        shards.forEach(shard -> result.add(shard.info));
+        return result;
+    }
+
+    private static void writeManifest(Path dir, int nextId, List<ShardInfo> infos) throws IOException {
+        Path tmp = dir.resolve(MANIFEST_TMP);
+        try (DataOutputStream output = new DataOutputStream(Files.newOutputStream(tmp))) {
+            output.writeInt(nextId);
+            output.writeInt(infos.size());
+            for (ShardInfo info : infos) {
+                Path path = info.path.startsWith(dir) ? dir.relativize(info.path) : info.path.toAbsolutePath();
+                ByteBuffer lowerBound = info.lowerBound.duplicate();
+                byte[] bytes = new byte[lowerBound.remaining()];
+                lowerBound.get(bytes);
+
+                output.writeInt(info.id);
+                output.writeUTF(path.toString());
+                output.writeInt(bytes.length);
+                output.write(bytes);
+            }
+        }
+        Files.move(tmp, dir.resolve(MANIFEST), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static ByteBuffer copy(ByteBuffer key) {
+        ByteBuffer result = ByteBuffer.allocate(key.remaining());
+        result.put(key.duplicate());
+        return result.flip();
+    }
+
+    private static void closeSuppressed(DAO dao, Exception e) {
+        try {
+            dao.close();
+        } catch (IOException closeException) {
+            e.addSuppressed(closeException);
+        }
+    }
+
+    private static final class ShardInfo {
+        final int id;
+        final Path path;
+        final ByteBuffer lowerBound;
+
+        ShardInfo(int id, Path path, ByteBuffer lowerBound) {
+            this.id = id;
+            this.path = path;
+            this.lowerBound = lowerBound;
+        }
+    }
+
+    private static final class Shard {
+        final ShardInfo info;
+        final DAO dao;
+        // Read lock for writes routed to the shard, write lock for moving records out of it or checkpointing
+        final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+        Shard(ShardInfo info, DAO dao) {
+            this.info = info;
+            this.dao = dao;
+        }
+    }
+
+    private static final class ConcatIterator implements Iterator<Record> {
+        private final Iterator<Iterator<Record>> iterators;
+        private Iterator<Record> current = Collections.emptyIterator();
+
+        ConcatIterator(List<Iterator<Record>> iterators) {
+            this.iterators = iterators.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext() && iterators.hasNext()) {
+                current = iterators.next();
+            }
+            return current.hasNext();
+        }
+
+        @Override
+        public Record next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+    }
+
+}
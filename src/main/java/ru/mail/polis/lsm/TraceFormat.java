@@ -0,0 +1,83 @@
+package ru.mail.polis.lsm;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Binary format of operation traces written by {@link RecordingDAO} and read by {@link TraceReplayer}.
+ *
+ * <p>Trace is {@link #MAGIC}, {@link #VERSION} and a sequence of chunks: var-long stream (calling thread) id,
+ * var-long chunk length in bytes and entries of that stream. Entry is opcode byte, zigzag var-long start time
+ * delta from the previous entry of the stream (the first one is relative to the start of recording) and var-long
+ * duration (both in nanoseconds), then operation arguments. Keys are stored in full, values only by size.
+ * Entries are not ordered by start time: a range is written when its iterator is done.
+ */
+final class TraceFormat {
+
+    static final int MAGIC = 0x4C534D54;
+    static final int VERSION = 3;
+
+    /** Value size, var-long TTL in milliseconds plus one (zero if none), key. */
+    static final byte UPSERT = 1;
+    /** Key. */
+    static final byte TOMBSTONE = 2;
+    /** Flags ({@link #HAS_FROM}, {@link #HAS_TO}), present bounds, var-long count of records read. */
+    static final byte RANGE = 3;
+    /** Var-long key count, keys. */
+    static final byte MULTI_GET = 4;
+    /** No arguments. */
+    static final byte COMPACT = 5;
+
+    static final int HAS_FROM = 1;
+    static final int HAS_TO = 2;
+
+    private TraceFormat() {
+        // Only static methods
+    }
+
+    static void writeVarLong(DataOutput output, long value) throws IOException {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            output.writeByte((int) (remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        output.writeByte((int) remaining);
+    }
+
+    static long readVarLong(DataInput input) throws IOException {
+        long result = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = input.readByte();
+            result |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return result;
+    }
+
+    static void writeSignedVarLong(DataOutput output, long value) throws IOException {
+        writeVarLong(output, (value << 1) ^ (value >> 63));
+    }
+
+    static long readSignedVarLong(DataInput input) throws IOException {
+        long value = readVarLong(input);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static void writeKey(DataOutput output, ByteBuffer key) throws IOException {
+        writeVarLong(output, key.remaining());
+        for (int i = key.position(); i < key.limit(); i++) {
+            output.writeByte(key.get(i));
+        }
+    }
+
+    static ByteBuffer readKey(DataInput input) throws IOException {
+        byte[] key = new byte[(int) readVarLong(input)];
+        input.readFully(key);
+        return ByteBuffer.wrap(key);
+    }
+
+}
@@ -0,0 +1,247 @@
+package ru.mail.polis.lsm;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives any {@link DAO} with operations recorded by {@link RecordingDAO}.
+ */
+public final class TraceReplayer {
+
+    private static final String[] LATENCIES = {
+            "upsert.latency", "tombstone.latency", "range.latency", "multiget.latency", "compact.latency"
+    };
+
+    private TraceReplayer() {
+        // Only static methods
+    }
+
+    /**
+     * Replay {@code trace} against {@code dao}. Every recorded stream is replayed by its own thread in order
+     * of start time, so concurrency of the recorded workload is reproduced. The trace is read into memory first.
+     * Latency is measured from the scheduled start of operation, so falling behind the trace is not hidden.
+     * Upserted values are zero-filled and have the recorded sizes, ranges read as many records as recorded.
+     *
+     * @param speedup {@code 1} for original timing, {@code 10} for ten times faster,
+     *                {@link Double#POSITIVE_INFINITY} for as fast as possible
+     * @return {@code upsert}, {@code tombstone}, {@code range}, {@code multiget} and {@code compact} latency
+     *     histograms (in nanoseconds) with {@code .latency} suffix, {@code replay.operations} count,
+     *     {@code replay.streams} count, {@code replay.elapsed} time in nanoseconds and {@code replay.throughput}
+     *     in operations per second
+     */
+    public static MetricsRegistry replay(Path trace, DAO dao, double speedup) throws IOException {
+        MetricsRegistry metrics = new MetricsRegistry();
+        Map<Long, List<Operation>> streams = read(trace, metrics);
+        int valueSize = 0;
+        long operations = 0;
+        for (List<Operation> stream : streams.values()) {
+            stream.sort(Comparator.comparingLong(operation -> operation.start));
+            for (Operation operation : stream) {
+                valueSize = Math.max(valueSize, operation.valueSize);
+            }
+            operations += stream.size();
+        }
+        // Never written, shared by all streams
+        ByteBuffer values = ByteBuffer.allocate(valueSize);
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(streams.size(), 1));
+        long replayStart = System.nanoTime();
+        try {
+            List<Future<?>> futures = new ArrayList<>(streams.size());
+            for (List<Operation> stream : streams.values()) {
+                futures.add(executor.submit(() -> {
+                    for (Operation operation : stream) {
+                        long scheduled = Double.isInfinite(speedup)
+                                ? System.nanoTime()
+                                : replayStart + (long) (operation.start / speedup);
+                        waitUntil(scheduled);
+                        operation.execute(dao, values);
+                        operation.latency.record(System.nanoTime() - scheduled);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while replaying " + trace, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IOException("Can't replay " + trace, e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        long elapsed = System.nanoTime() - replayStart;
+        long total = operations;
+        metrics.counter("replay.operations").add(total);
+        metrics.counter("replay.streams").add(streams.size());
+        metrics.gauge("replay.elapsed", () -> elapsed);
+        metrics.gauge("replay.throughput", () -> elapsed == 0 ? 0 : total * 1_000_000_000L / elapsed);
+        return metrics;
+    }
+
+    /**
+     * Operations of every stream with start time relative to the start of trace.
+     */
+    private static Map<Long, List<Operation>> read(Path trace, MetricsRegistry metrics) throws IOException {
+        // Reported even if there are no such operations
+        for (String name : LATENCIES) {
+            metrics.histogram(name);
+        }
+
+        Map<Long, List<Operation>> streams = new TreeMap<>();
+        Map<Long, Long> streamTimes = new HashMap<>();
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(trace)))) {
+            if (input.readInt() != TraceFormat.MAGIC || input.readInt() != TraceFormat.VERSION) {
+                throw new IOException("Not a trace of supported version: " + trace);
+            }
+
+            while (true) {
+                input.mark(1);
+                if (input.read() < 0) {
+                    break;
+                }
+                input.reset();
+
+                long stream = TraceFormat.readVarLong(input);
+                byte[] chunk = new byte[(int) TraceFormat.readVarLong(input)];
+                input.readFully(chunk);
+                List<Operation> operations = streams.computeIfAbsent(stream, id -> new ArrayList<>());
+                long traceTime = streamTimes.getOrDefault(stream, 0L);
+
+                DataInputStream entries = new DataInputStream(new ByteArrayInputStream(chunk));
+                int opcode;
+                while ((opcode = entries.read()) >= 0) {
+                    traceTime += TraceFormat.readSignedVarLong(entries);
+                    TraceFormat.readVarLong(entries); // Recorded duration, replay measures its own
+                    operations.add(readOperation(opcode, traceTime, entries, metrics, trace));
+                }
+                streamTimes.put(stream, traceTime);
+            }
+        }
+        return streams;
+    }
+
+    private static Operation readOperation(int opcode,
+                                           long start,
+                                           DataInputStream input,
+                                           MetricsRegistry metrics,
+                                           Path trace) throws IOException {
+        Operation operation;
+        switch (opcode) {
+            case TraceFormat.UPSERT:
+                operation = new Operation(TraceFormat.UPSERT, start, metrics.histogram("upsert.latency"));
+                operation.valueSize = (int) TraceFormat.readVarLong(input);
+                operation.ttl = TraceFormat.readVarLong(input);
+                operation.fromKey = TraceFormat.readKey(input);
+                break;
+            case TraceFormat.TOMBSTONE:
+                operation = new Operation(TraceFormat.TOMBSTONE, start, metrics.histogram("tombstone.latency"));
+                operation.fromKey = TraceFormat.readKey(input);
+                break;
+            case TraceFormat.RANGE:
+                operation = new Operation(TraceFormat.RANGE, start, metrics.histogram("range.latency"));
+                int flags = input.readByte();
+                operation.fromKey = (flags & TraceFormat.HAS_FROM) == 0 ? null : TraceFormat.readKey(input);
+                operation.toKey = (flags & TraceFormat.HAS_TO) == 0 ? null : TraceFormat.readKey(input);
+                operation.count = TraceFormat.readVarLong(input);
+                break;
+            case TraceFormat.MULTI_GET:
+                operation = new Operation(TraceFormat.MULTI_GET, start, metrics.histogram("multiget.latency"));
+                int count = (int) TraceFormat.readVarLong(input);
+                operation.keys = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    operation.keys.add(TraceFormat.readKey(input));
+                }
+                break;
+            case TraceFormat.COMPACT:
+                operation = new Operation(TraceFormat.COMPACT, start, metrics.histogram("compact.latency"));
+                break;
+            default:
+                throw new IOException("Unknown opcode " + opcode + " in " + trace);
+        }
+        return operation;
+    }
+
+    private static void waitUntil(long nanoTime) {
+        long delay;
+        while ((delay = nanoTime - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(delay);
+        }
+    }
+
+    private static final class Operation {
+        final byte opcode;
+        final long start;
+        final Histogram latency;
+        // Key of upsert and tombstone
+        @Nullable
+        ByteBuffer fromKey;
+        @Nullable
+        ByteBuffer toKey;
+        int valueSize;
+        long ttl;
+        long count;
+        List<ByteBuffer> keys;
+
+        Operation(byte opcode, long start, Histogram latency) {
+            this.opcode = opcode;
+            this.start = start;
+            this.latency = latency;
+        }
+
+        void execute(DAO dao, ByteBuffer values) {
+            switch (opcode) {
+                case TraceFormat.UPSERT:
+                    ByteBuffer value = values.duplicate().limit(valueSize);
+                    dao.upsert(ttl == 0
+                            ? Record.of(fromKey, value)
+                            : Record.of(fromKey, value, System.currentTimeMillis() + ttl - 1));
+                    break;
+                case TraceFormat.TOMBSTONE:
+                    dao.upsert(Record.tombstone(fromKey));
+                    break;
+                case TraceFormat.RANGE:
+                    Iterator<Record> records = dao.range(fromKey, toKey);
+                    for (long i = 0; i < count && records.hasNext(); i++) {
+                        records.next();
+                    }
+                    break;
+                case TraceFormat.MULTI_GET:
+                    dao.multiGet(keys);
+                    break;
+                case TraceFormat.COMPACT:
+                    dao.compact();
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown opcode " + opcode);
+            }
+        }
+    }
+
+}
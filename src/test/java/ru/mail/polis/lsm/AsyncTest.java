@@ -0,0 +1,144 @@
+package ru.mail.polis.lsm;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static ru.mail.polis.lsm.Utils.generateMap;
+import static ru.mail.polis.lsm.Utils.key;
+import static ru.mail.polis.lsm.Utils.value;
+
+class AsyncTest {
+
+    private static final int THREAD_COUNT = 4;
+
+    private AsyncDAO dao;
+
+    @BeforeEach
+    void start(@TempDir Path dir) throws IOException {
+        dao = new AsyncDAO(TestDaoWrapper.create(new DAOConfig(dir)), Executors.newFixedThreadPool(THREAD_COUNT));
+    }
+
+    @AfterEach
+    void finish() throws IOException {
+        dao.close();
+    }
+
+    @Test
+    void upsertAndGet() throws InterruptedException, ExecutionException, TimeoutException {
+        Map<ByteBuffer, ByteBuffer> map = generateMap(0, 100);
+
+        CompletableFuture.allOf(map.entrySet().stream()
+                .map(e -> dao.upsert(Record.of(e.getKey(), e.getValue())))
+                .toArray(CompletableFuture[]::new)
+        ).get(10, TimeUnit.SECONDS);
+
+        List<Record> records = dao.get(Arrays.asList(key(5), key(1000), key(7))).get(10, TimeUnit.SECONDS);
+
+        assertEquals(3, records.size());
+        assertEquals(value(5), records.get(0).getValue());
+        assertEquals(null, records.get(1));
+        assertEquals(value(7), records.get(2).getValue());
+    }
+
+    @Test
+    void rangeWithBackPressure() throws InterruptedException, ExecutionException, TimeoutException {
+        Map<ByteBuffer, ByteBuffer> map = generateMap(0, 100);
+
+        CompletableFuture.allOf(map.entrySet().stream()
+                .map(e -> dao.upsert(Record.of(e.getKey(), e.getValue())))
+                .toArray(CompletableFuture[]::new)
+        ).get(10, TimeUnit.SECONDS);
+
+        CompletableFuture<List<Record>> result = new CompletableFuture<>();
+        dao.range(null, null).subscribe(new Flow.Subscriber<>() {
+            private final List<Record> records = new ArrayList<>();
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(Record item) {
+                records.add(item);
+                subscription.request(1);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                result.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                result.complete(records);
+            }
+        });
+
+        List<Record> records = result.get(10, TimeUnit.SECONDS);
+        assertTrue(!records.isEmpty());
+        Utils.assertEquals(records.iterator(), new TreeMap<>(map).entrySet());
+    }
+
+    @Test
+    void invalidRequestSignalledByDrain() throws InterruptedException, ExecutionException, TimeoutException {
+        Map<ByteBuffer, ByteBuffer> map = generateMap(0, 10);
+        map.forEach((k, v) -> dao.upsert(Record.of(k, v)).join());
+
+        Thread caller = Thread.currentThread();
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        dao.range(null, null).subscribe(new Flow.Subscriber<>() {
+            private int received;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(1);
+                subscription.request(0);
+            }
+
+            @Override
+            public void onNext(Record item) {
+                received++;
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                if (throwable instanceof IllegalArgumentException && Thread.currentThread() != caller) {
+                    result.complete(received);
+                } else {
+                    result.completeExceptionally(throwable);
+                }
+            }
+
+            @Override
+            public void onComplete() {
+                result.completeExceptionally(new AssertionError("Completed after invalid request"));
+            }
+        });
+
+        // At most the record requested before the invalid request
+        assertTrue(result.get(10, TimeUnit.SECONDS) <= 1);
+    }
+
+}
@@ -9,16 +9,22 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static ru.mail.polis.lsm.Utils.assertDaoEquals;
 import static ru.mail.polis.lsm.Utils.assertEquals;
 import static ru.mail.polis.lsm.Utils.generateMap;
 import static ru.mail.polis.lsm.Utils.key;
 import static ru.mail.polis.lsm.Utils.mapOf;
+import static ru.mail.polis.lsm.Utils.value;
 import static ru.mail.polis.lsm.Utils.wrap;
 
 class BasicTest {
@@ -158,4 +164,45 @@ class BasicTest {
         assertFalse(dao.range(null, null).hasNext());
     }
 
+    @Test
+    void expired() {
+        Map<ByteBuffer, ByteBuffer> map = generateMap(0, 10);
+
+        map.forEach((k, v) -> dao.upsert(Record.of(k, v)));
+
+        long now = System.currentTimeMillis();
+        dao.upsert(Record.of(wrap("KEY_EXPIRED"), wrap("VALUE_EXPIRED"), now - 1));
+        dao.upsert(Record.of(key(5), value(5), now - 1));
+        map.remove(key(5));
+
+        assertDaoEquals(dao, map);
+    }
+
+    @Test
+    void notExpired() {
+        Map<ByteBuffer, ByteBuffer> map = generateMap(0, 10);
+
+        long expireTime = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1);
+        map.forEach((k, v) -> dao.upsert(Record.of(k, v, expireTime)));
+
+        assertDaoEquals(dao, map);
+    }
+
+    @Test
+    void multiGet() {
+        Map<ByteBuffer, ByteBuffer> map = generateMap(0, 100);
+
+        map.forEach((k, v) -> dao.upsert(Record.of(k, v)));
+        dao.upsert(Record.tombstone(key(42)));
+
+        List<Record> records = dao.multiGet(Arrays.asList(key(50), key(7), key(1000), key(42), key(7)));
+
+        assertEquals(5, records.size());
+        assertEquals(value(50), records.get(0).getValue());
+        assertEquals(value(7), records.get(1).getValue());
+        assertNull(records.get(2));
+        assertNull(records.get(3));
+        assertEquals(value(7), records.get(4).getValue());
+    }
+
 }
@@ -0,0 +1,43 @@
+package ru.mail.polis.lsm;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ByteBuffersTest {
+
+    @Test
+    void sameOrderAsCompareTo() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            ByteBuffer a = randomBuffer(random);
+            ByteBuffer b = random.nextBoolean() ? randomBuffer(random) : a.duplicate();
+
+            assertEquals(Integer.signum(a.compareTo(b)), Integer.signum(ByteBuffers.compare(a, b)));
+        }
+    }
+
+    @Test
+    void nextKeyIsSuccessor() {
+        ByteBuffer key = ByteBuffer.wrap(new byte[]{1, 2, 3});
+        ByteBuffer next = DAO.nextKey(key);
+
+        assertEquals(-1, Integer.signum(ByteBuffers.compare(key, next)));
+        assertEquals(-1, Integer.signum(ByteBuffers.compare(next, ByteBuffer.wrap(new byte[]{1, 2, 3, -127}))));
+        assertEquals(-1, Integer.signum(ByteBuffers.compare(next, ByteBuffer.wrap(new byte[]{1, 2, 4}))));
+    }
+
+    private static ByteBuffer randomBuffer(Random random) {
+        // Short alphabet around zero to get long common prefixes and negative bytes
+        byte[] bytes = new byte[random.nextInt(40)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (random.nextInt(3) - 1);
+        }
+        int offset = bytes.length == 0 ? 0 : random.nextInt(bytes.length);
+        return ByteBuffer.wrap(bytes, offset, bytes.length - offset).slice();
+    }
+
+}
@@ -11,19 +11,24 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Spliterator;
 import java.util.Spliterators;
+import java.util.TreeMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static ru.mail.polis.lsm.Utils.generateMap;
+import static ru.mail.polis.lsm.Utils.key;
 
 class ConcurrentTest {
 
@@ -75,5 +80,49 @@ class ConcurrentTest {
         }
     }
 
+    @Test
+    void parallelScan() {
+        Map<ByteBuffer, ByteBuffer> map = generateMap(0, 10_000);
+        map.forEach((k, v) -> dao.upsert(Record.of(k, v)));
+
+        List<Record> records = StreamSupport.stream(dao.spliterator(null, null), true)
+                .collect(Collectors.toList());
+        Utils.assertEquals(records.iterator(), new TreeMap<>(map).entrySet());
+
+        ByteBuffer from = key(100);
+        ByteBuffer to = key(200);
+        long count = StreamSupport.stream(dao.spliterator(from, to), true).count();
+        assertEquals(new TreeMap<>(map).subMap(from, to).size(), count);
+    }
+
+    @Test
+    void parallelScanSplitsStoredKeys() {
+        Map<ByteBuffer, ByteBuffer> map = generateMap(0, 10_000);
+        map.forEach((k, v) -> dao.upsert(Record.of(k, v)));
+
+        List<Spliterator<Record>> parts = new ArrayList<>();
+        parts.add(dao.spliterator(null, null));
+        for (int depth = 0; depth < 5; depth++) {
+            List<Spliterator<Record>> split = new ArrayList<>();
+            for (Spliterator<Record> part : parts) {
+                Spliterator<Record> prefix = part.trySplit();
+                if (prefix != null) {
+                    split.add(prefix);
+                }
+                split.add(part);
+            }
+            parts = split;
+        }
+
+        long total = 0;
+        long largest = 0;
+        for (Spliterator<Record> part : parts) {
+            long count = StreamSupport.stream(part, false).count();
+            total += count;
+            largest = Math.max(largest, count);
+        }
+        assertEquals(map.size(), total);
+        assertTrue(largest < map.size() / 2, "Largest part has " + largest + " records");
+    }
 
 }
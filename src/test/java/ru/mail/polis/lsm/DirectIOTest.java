@@ -0,0 +1,58 @@
+package ru.mail.polis.lsm;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static ru.mail.polis.lsm.Utils.sizeBasedRandomData;
+
+class DirectIOTest {
+
+    private static final int BLOCK_SIZE = 4096;
+
+    // Not a multiple of any block size and bigger than copy buffer
+    private static final int[] SIZES = {0, 1, BLOCK_SIZE, 3 * 1024 * 1024 + 123};
+
+    /**
+     * Direct or buffered copy, whichever the file system of temporary directory supports (e.g. buffered on tmpfs).
+     */
+    @Test
+    void copy(@TempDir Path data) throws IOException {
+        for (int size : SIZES) {
+            Path source = data.resolve("source" + size);
+            Path target = data.resolve("target" + size);
+            Files.write(source, sizeBasedRandomData(size));
+
+            DirectIO.copy(source, target);
+
+            assertEquals(ByteBuffer.wrap(Files.readAllBytes(source)), ByteBuffer.wrap(Files.readAllBytes(target)));
+        }
+    }
+
+    /**
+     * Block aligned copy loop of direct I/O on any file system.
+     */
+    @Test
+    void alignedCopy(@TempDir Path data) throws IOException {
+        for (int size : SIZES) {
+            Path source = data.resolve("source" + size);
+            Path target = data.resolve("target" + size);
+            Files.write(source, sizeBasedRandomData(size));
+
+            try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                DirectIO.copy(in, out, BLOCK_SIZE);
+            }
+
+            assertEquals(ByteBuffer.wrap(Files.readAllBytes(source)), ByteBuffer.wrap(Files.readAllBytes(target)));
+        }
+    }
+
+}
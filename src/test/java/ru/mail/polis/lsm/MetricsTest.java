@@ -0,0 +1,79 @@
+package ru.mail.polis.lsm;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static ru.mail.polis.lsm.Utils.generateMap;
+import static ru.mail.polis.lsm.Utils.key;
+
+class MetricsTest {
+
+    @Test
+    void counters(@TempDir Path data) throws IOException {
+        Map<ByteBuffer, ByteBuffer> map = generateMap(0, 100);
+        MetricsRegistry metrics = new MetricsRegistry();
+
+        try (DAO dao = MetricsDAO.create(TestDaoWrapper.create(new DAOConfig(data)), metrics)) {
+            map.forEach((k, v) -> dao.upsert(Record.of(k, v)));
+            dao.upsert(Record.tombstone(key(0)));
+
+            Iterator<Record> range = dao.range(null, null);
+            while (range.hasNext()) {
+                range.next();
+            }
+        }
+
+        Map<String, Number> snapshot = metrics.snapshot();
+        assertEquals(101L, snapshot.get("upsert.latency.count"));
+        assertEquals(1L, snapshot.get("upsert.tombstones"));
+        assertEquals(99L, snapshot.get("range.records"));
+        assertEquals(1L, snapshot.get("range.open.latency.count"));
+        assertEquals(1L, snapshot.get("range.first.latency.count"));
+        assertEquals(1L, snapshot.get("range.latency.count"));
+        assertTrue(snapshot.get("range.latency.max").longValue()
+                >= snapshot.get("range.first.latency.max").longValue());
+        assertTrue(snapshot.get("upsert.bytes").longValue() > snapshot.get("range.bytes").longValue());
+    }
+
+    @Test
+    void jmx(@TempDir Path data) throws Exception {
+        MetricsRegistry metrics = new MetricsRegistry();
+        ObjectName name = new ObjectName("ru.mail.polis.lsm:type=DAO,name=" + ObjectName.quote("jmx"));
+
+        try (DAO dao = MetricsDAO.create(TestDaoWrapper.create(new DAOConfig(data)), metrics, "jmx")) {
+            dao.upsert(Record.of(key(1), key(1)));
+
+            assertEquals(1L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "upsert.latency.count"));
+        }
+
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    }
+
+    @Test
+    void histogramPrecision() {
+        Histogram histogram = new MetricsRegistry().histogram("latency");
+        // Uniform 10000..20000, within a single power of two
+        for (long value = 10_000; value < 20_000; value++) {
+            histogram.record(value);
+        }
+
+        for (double percentile : new double[]{50, 90, 99}) {
+            long expected = 10_000 + (long) (percentile * 100);
+            long actual = histogram.getPercentile(percentile);
+            assertTrue(actual >= expected && actual <= expected + expected / 16,
+                    "p" + percentile + " is " + actual + ", expected " + expected);
+        }
+    }
+
+}
@@ -10,7 +10,9 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -220,6 +222,114 @@ class PersistenceTest {
         assertTrue(beforeCompactSize / 50 > size);
     }
 
+    @Test
+    void expiredDroppedOnCompaction(@TempDir Path data) throws IOException {
+        byte[] suffix = sizeBasedRandomData(1024);
+        int recordsCount = 1000;
+
+        try (DAO dao = TestDaoWrapper.create(new DAOConfig(data))) {
+            long expireTime = System.currentTimeMillis() - 1;
+            for (int i = 0; i < recordsCount; i++) {
+                dao.upsert(Record.of(keyWithSuffix(i, suffix), valueWithSuffix(i, suffix), expireTime));
+            }
+        }
+
+        try (DAO dao = TestDaoWrapper.create(new DAOConfig(data))) {
+            assertFalse(dao.range(null, null).hasNext());
+            dao.compact();
+            assertFalse(dao.range(null, null).hasNext());
+        }
+
+        int size = getDirSize(data);
+        assertTrue(recordsCount * suffix.length / 50 > size);
+    }
+
+    @Test
+    void expiredHidesOlderValue(@TempDir Path data) throws IOException {
+        try (DAO dao = TestDaoWrapper.create(new DAOConfig(data))) {
+            dao.upsert(Record.of(key(1), value(1)));
+        }
+
+        try (DAO dao = TestDaoWrapper.create(new DAOConfig(data))) {
+            dao.upsert(Record.of(key(1), value(2), System.currentTimeMillis() - 1));
+        }
+
+        try (DAO dao = TestDaoWrapper.create(new DAOConfig(data))) {
+            assertFalse(dao.range(key(1), DAO.nextKey(key(1))).hasNext());
+        }
+    }
+
+    @Test
+    void checkpoint(@TempDir Path data) throws IOException {
+        Path db = Files.createDirectory(data.resolve("db"));
+        Path checkpoint = Files.createDirectory(data.resolve("checkpoint"));
+        Map<ByteBuffer, ByteBuffer> map = Utils.generateMap(0, 100);
+
+        try (DAO dao = TestDaoWrapper.create(new DAOConfig(db))) {
+            map.forEach((k, v) -> dao.upsert(Record.of(k, v)));
+            dao.checkpoint(checkpoint);
+
+            // Not visible in checkpoint
+            dao.upsert(Record.of(key(1000), value(1000)));
+            dao.upsert(Record.tombstone(key(1)));
+        }
+
+        try (DAO dao = TestDaoWrapper.create(new DAOConfig(checkpoint))) {
+            assertDaoEquals(dao, map);
+        }
+    }
+
+    @Test
+    void incrementalBackup(@TempDir Path data) throws IOException {
+        Path db = Files.createDirectory(data.resolve("db"));
+        Path checkpoint1 = Files.createDirectory(data.resolve("checkpoint1"));
+        Path checkpoint2 = Files.createDirectory(data.resolve("checkpoint2"));
+        Path backup1 = Files.createDirectory(data.resolve("backup1"));
+        Path backup2 = Files.createDirectory(data.resolve("backup2"));
+        Map<ByteBuffer, ByteBuffer> map = Utils.generateMap(0, 100);
+
+        try (DAO dao = TestDaoWrapper.create(new DAOConfig(db))) {
+            map.forEach((k, v) -> dao.upsert(Record.of(k, v)));
+            dao.checkpoint(checkpoint1);
+
+            Map<ByteBuffer, ByteBuffer> more = Utils.generateMap(100, 200);
+            more.forEach((k, v) -> dao.upsert(Record.of(k, v)));
+            map.putAll(more);
+            dao.checkpoint(checkpoint2);
+        }
+
+        Checkpoints.incremental(checkpoint1, null, backup1);
+        Checkpoints.incremental(checkpoint2, backup1, backup2);
+
+        try (DAO dao = TestDaoWrapper.create(new DAOConfig(backup2))) {
+            assertDaoEquals(dao, map);
+        }
+    }
+
+    @Test
+    void incrementalBackupDetectsRewrittenFiles(@TempDir Path data) throws IOException {
+        Path checkpoint1 = Files.createDirectory(data.resolve("checkpoint1"));
+        Path checkpoint2 = Files.createDirectory(data.resolve("checkpoint2"));
+        Path backup1 = Files.createDirectory(data.resolve("backup1"));
+        Path backup2 = Files.createDirectory(data.resolve("backup2"));
+
+        // Rewritten under the same name and size
+        Files.writeString(checkpoint1.resolve("file"), "old");
+        Files.writeString(checkpoint2.resolve("file"), "new");
+        FileTime written = Files.getLastModifiedTime(checkpoint1.resolve("file"));
+        Files.setLastModifiedTime(checkpoint2.resolve("file"), FileTime.fromMillis(written.toMillis() + 1000));
+        // Immutable file linked into both checkpoints
+        Files.writeString(checkpoint1.resolve("same"), "same");
+        Files.createLink(checkpoint2.resolve("same"), checkpoint1.resolve("same"));
+
+        Checkpoints.incremental(checkpoint1, null, backup1);
+        List<Path> copied = Checkpoints.incremental(checkpoint2, backup1, backup2);
+
+        assertEquals(List.of(checkpoint2.resolve("file")), copied);
+        assertEquals("new", Files.readString(backup2.resolve("file")));
+        assertEquals("same", Files.readString(backup2.resolve("same")));
+    }
+
     private int getDirSize(Path data) throws IOException {
         int[] size = new int[1];
 
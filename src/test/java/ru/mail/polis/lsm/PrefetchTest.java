@@ -0,0 +1,92 @@
+package ru.mail.polis.lsm;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static ru.mail.polis.lsm.Utils.assertDaoEquals;
+import static ru.mail.polis.lsm.Utils.assertEquals;
+import static ru.mail.polis.lsm.Utils.generateMap;
+import static ru.mail.polis.lsm.Utils.key;
+
+class PrefetchTest {
+
+    private static final long MAX_READAHEAD_BYTES = 1024;
+
+    private DAO dao;
+
+    @BeforeEach
+    void start(@TempDir Path dir) throws IOException {
+        dao = new PrefetchDAO(TestDaoWrapper.create(new DAOConfig(dir)), Executors.newFixedThreadPool(2),
+                MAX_READAHEAD_BYTES);
+    }
+
+    @AfterEach
+    void finish() throws IOException {
+        dao.close();
+    }
+
+    @Test
+    void scan() {
+        Map<ByteBuffer, ByteBuffer> map = generateMap(0, 10_000);
+
+        map.forEach((k, v) -> dao.upsert(Record.of(k, v)));
+
+        assertDaoEquals(dao, map);
+    }
+
+    @Test
+    void point() {
+        Map<ByteBuffer, ByteBuffer> map = generateMap(0, 100);
+
+        map.forEach((k, v) -> dao.upsert(Record.of(k, v)));
+
+        Iterator<Record> range = dao.range(key(42), DAO.nextKey(key(42)));
+        assertEquals(range, new TreeMap<>(generateMap(42, 43)).entrySet());
+        assertFalse(range.hasNext());
+    }
+
+    @Test
+    void sharedBudget() {
+        Map<ByteBuffer, ByteBuffer> map = generateMap(0, 1_000);
+        map.forEach((k, v) -> dao.upsert(Record.of(k, v)));
+
+        AtomicLong budget = new AtomicLong(MAX_READAHEAD_BYTES);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Iterator<Record> first = new PrefetchIterator(dao.range(null, null), executor, budget);
+            Iterator<Record> second = new PrefetchIterator(dao.range(null, null), executor, budget);
+            int count = 0;
+            while (first.hasNext() || second.hasNext()) {
+                if (first.hasNext()) {
+                    first.next();
+                    count++;
+                }
+                if (second.hasNext()) {
+                    second.next();
+                    count++;
+                }
+                assertTrue(budget.get() >= 0 && budget.get() <= MAX_READAHEAD_BYTES);
+            }
+            assertEquals(2 * map.size(), count);
+            assertEquals(MAX_READAHEAD_BYTES, budget.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
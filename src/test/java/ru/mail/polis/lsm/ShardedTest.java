@@ -0,0 +1,153 @@
+package ru.mail.polis.lsm;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static ru.mail.polis.lsm.Utils.assertDaoEquals;
+import static ru.mail.polis.lsm.Utils.generateMap;
+import static ru.mail.polis.lsm.Utils.key;
+import static ru.mail.polis.lsm.Utils.value;
+
+class ShardedTest {
+
+    @Test
+    void routing(@TempDir Path data) throws IOException {
+        DAOConfig config = config(data, key(3), key(6));
+        Map<ByteBuffer, ByteBuffer> map = generateMap(0, 1000);
+
+        try (DAO dao = TestDaoWrapper.create(config)) {
+            map.forEach((k, v) -> dao.upsert(Record.of(k, v)));
+
+            assertDaoEquals(dao, map);
+            Utils.assertEquals(dao.range(key(2), key(7)), new TreeMap<>(map).subMap(key(2), key(7)).entrySet());
+
+            List<Record> records = dao.multiGet(Arrays.asList(key(7), key(1), key(4)));
+            assertEquals(value(7), records.get(0).getValue());
+            assertEquals(value(1), records.get(1).getValue());
+            assertEquals(value(4), records.get(2).getValue());
+        }
+
+        // Sharding is restored from manifest
+        try (DAO dao = TestDaoWrapper.create(new DAOConfig(data.resolve("main")))) {
+            assertDaoEquals(dao, map);
+        }
+    }
+
+    @Test
+    void onlineSplit(@TempDir Path data) throws Exception {
+        DAOConfig config = config(data);
+        Map<ByteBuffer, ByteBuffer> map = generateMap(0, 1000);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try (ShardedDAO dao = ShardedDAO.open(config)) {
+            Future<?> writer = executor.submit(() -> map.forEach((k, v) -> dao.upsert(Record.of(k, v))));
+            dao.split(key(5));
+            dao.split(key(2));
+            writer.get(10, TimeUnit.SECONDS);
+
+            assertDaoEquals(dao, map);
+
+            dao.compact();
+            assertDaoEquals(dao, map);
+
+            List<Record> parallel = StreamSupport.stream(dao.spliterator(null, null), true)
+                    .collect(Collectors.toList());
+            Utils.assertEquals(parallel.iterator(), new TreeMap<>(map).entrySet());
+        } finally {
+            executor.shutdown();
+        }
+
+        try (DAO dao = TestDaoWrapper.create(new DAOConfig(data.resolve("main")))) {
+            assertDaoEquals(dao, map);
+        }
+        // New shards are spread over shard directories
+        try (Stream<Path> shards = Files.list(data.resolve("disk2"))) {
+            assertTrue(shards.findAny().isPresent());
+        }
+    }
+
+    @Test
+    void splitSurvivesCrash(@TempDir Path data) throws IOException {
+        DAOConfig config = config(data);
+        Map<ByteBuffer, ByteBuffer> map = generateMap(0, 100);
+
+        try (DAO dao = ShardedDAO.open(config)) {
+            map.forEach((k, v) -> dao.upsert(Record.of(k, v)));
+        }
+
+        // Not closed after split, as if the process died
+        ShardedDAO crashed = ShardedDAO.open(config);
+        try {
+            crashed.split(key(5));
+
+            try (DAO dao = TestDaoWrapper.create(new DAOConfig(data.resolve("main")))) {
+                assertDaoEquals(dao, map);
+            }
+        } finally {
+            crashed.close();
+        }
+    }
+
+    @Test
+    void checkpoint(@TempDir Path data) throws IOException {
+        Path checkpoint = Files.createDirectory(data.resolve("checkpoint"));
+        Map<ByteBuffer, ByteBuffer> map = generateMap(0, 100);
+
+        try (DAO dao = TestDaoWrapper.create(config(data, key(5)))) {
+            map.forEach((k, v) -> dao.upsert(Record.of(k, v)));
+            dao.checkpoint(checkpoint);
+        }
+
+        try (DAO dao = TestDaoWrapper.create(new DAOConfig(checkpoint))) {
+            assertDaoEquals(dao, map);
+        }
+
+        // Shards are in subdirectories of checkpoint
+        Path backup = Files.createDirectory(data.resolve("backup"));
+        Checkpoints.incremental(checkpoint, null, backup);
+        try (DAO dao = TestDaoWrapper.create(new DAOConfig(backup))) {
+            assertDaoEquals(dao, map);
+        }
+    }
+
+    @Test
+    void splitKeysWithoutShardDirs(@TempDir Path data) throws IOException {
+        Map<ByteBuffer, ByteBuffer> map = generateMap(0, 100);
+
+        try (DAO dao = TestDaoWrapper.create(new DAOConfig(data, List.of(), List.of(key(5))))) {
+            map.forEach((k, v) -> dao.upsert(Record.of(k, v)));
+        }
+        assertTrue(ShardedDAO.exists(data));
+
+        try (DAO dao = TestDaoWrapper.create(new DAOConfig(data))) {
+            assertDaoEquals(dao, map);
+        }
+    }
+
+    private static DAOConfig config(Path data, ByteBuffer... splitKeys) throws IOException {
+        return new DAOConfig(
+                Files.createDirectory(data.resolve("main")),
+                List.of(Files.createDirectory(data.resolve("disk1")), Files.createDirectory(data.resolve("disk2"))),
+                Arrays.asList(splitKeys)
+        );
+    }
+
+}
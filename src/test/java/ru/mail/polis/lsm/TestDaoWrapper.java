@@ -3,7 +3,11 @@ package ru.mail.polis.lsm;
 import javax.annotation.Nullable;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
 
 public class TestDaoWrapper implements DAO {
     static final long MAX_HEAP = 128 * 1024 * 1024;
@@ -26,16 +30,35 @@ public class TestDaoWrapper implements DAO {
         return delegate.range(toReadOnly(fromKey), toReadOnly(toKey));
     }
 
+    @Override
+    public Spliterator<Record> spliterator(@Nullable ByteBuffer fromKey, @Nullable ByteBuffer toKey) {
+        return delegate.spliterator(toReadOnly(fromKey), toReadOnly(toKey));
+    }
+
     @Override
     public void upsert(Record record) {
         delegate.upsert(record);
     }
 
+    @Override
+    public List<Record> multiGet(List<ByteBuffer> keys) {
+        List<ByteBuffer> readOnlyKeys = new ArrayList<>(keys.size());
+        for (ByteBuffer key : keys) {
+            readOnlyKeys.add(toReadOnly(key));
+        }
+        return delegate.multiGet(readOnlyKeys);
+    }
+
     @Override
     public void compact() {
         delegate.compact();
     }
 
+    @Override
+    public void checkpoint(Path target) throws IOException {
+        delegate.checkpoint(target);
+    }
+
     @Override
     public void close() throws IOException {
         delegate.close();
@@ -0,0 +1,136 @@
+package ru.mail.polis.lsm;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static ru.mail.polis.lsm.Utils.generateMap;
+import static ru.mail.polis.lsm.Utils.key;
+
+class TraceTest {
+
+    private static final int STREAMS = 4;
+
+    @Test
+    void recordAndReplay(@TempDir Path data) throws IOException {
+        Path original = Files.createDirectory(data.resolve("original"));
+        Path replayed = Files.createDirectory(data.resolve("replayed"));
+        Path trace = data.resolve("trace");
+        Map<ByteBuffer, ByteBuffer> map = generateMap(0, 100);
+
+        try (DAO dao = RecordingDAO.create(TestDaoWrapper.create(new DAOConfig(original)), trace)) {
+            map.forEach((k, v) -> dao.upsert(Record.of(k, v)));
+            dao.upsert(Record.tombstone(key(1)));
+            dao.range(key(10), key(20));
+            dao.range(null, null);
+            dao.multiGet(Arrays.asList(key(5), key(7)));
+        }
+
+        MetricsRegistry report;
+        try (DAO dao = TestDaoWrapper.create(new DAOConfig(replayed))) {
+            report = TraceReplayer.replay(trace, dao, Double.POSITIVE_INFINITY);
+        }
+
+        Map<String, Number> snapshot = report.snapshot();
+        assertEquals(104L, snapshot.get("replay.operations"));
+        assertEquals(100L, snapshot.get("upsert.latency.count"));
+        assertEquals(1L, snapshot.get("tombstone.latency.count"));
+        assertEquals(2L, snapshot.get("range.latency.count"));
+        assertEquals(1L, snapshot.get("multiget.latency.count"));
+
+        // Same keys and value sizes
+        try (DAO expected = TestDaoWrapper.create(new DAOConfig(original));
+             DAO actual = TestDaoWrapper.create(new DAOConfig(replayed))) {
+            Iterator<Record> expectedRange = expected.range(null, null);
+            Iterator<Record> actualRange = actual.range(null, null);
+            while (expectedRange.hasNext()) {
+                assertTrue(actualRange.hasNext());
+                Record expectedRecord = expectedRange.next();
+                Record actualRecord = actualRange.next();
+                assertEquals(expectedRecord.getKey(), actualRecord.getKey());
+                assertEquals(expectedRecord.getValue().remaining(), actualRecord.getValue().remaining());
+            }
+            assertFalse(actualRange.hasNext());
+        }
+    }
+
+    @Test
+    void rangeReadsRecordedCount(@TempDir Path data) throws IOException {
+        Path original = Files.createDirectory(data.resolve("original"));
+        Path replayed = Files.createDirectory(data.resolve("replayed"));
+        Path trace = data.resolve("trace");
+        Map<ByteBuffer, ByteBuffer> map = generateMap(0, 100);
+
+        try (DAO dao = RecordingDAO.create(TestDaoWrapper.create(new DAOConfig(original)), trace)) {
+            map.forEach((k, v) -> dao.upsert(Record.of(k, v)));
+            // Point probes read one record of unbounded ranges
+            for (int i = 0; i < 50; i++) {
+                dao.range(key(i), null).next();
+            }
+            Iterator<Record> full = dao.range(null, null);
+            while (full.hasNext()) {
+                full.next();
+            }
+        }
+
+        MetricsRegistry metrics = new MetricsRegistry();
+        try (DAO dao = MetricsDAO.create(TestDaoWrapper.create(new DAOConfig(replayed)), metrics)) {
+            TraceReplayer.replay(trace, dao, Double.POSITIVE_INFINITY);
+        }
+        assertEquals(50L + map.size(), metrics.snapshot().get("range.records"));
+    }
+
+    @Test
+    void concurrentStreams(@TempDir Path data) throws Exception {
+        Path original = Files.createDirectory(data.resolve("original"));
+        Path replayed = Files.createDirectory(data.resolve("replayed"));
+        Path trace = data.resolve("trace");
+
+        ExecutorService executor = Executors.newFixedThreadPool(STREAMS);
+        try (DAO dao = RecordingDAO.create(TestDaoWrapper.create(new DAOConfig(original)), trace)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < STREAMS; i++) {
+                int stream = i;
+                futures.add(executor.submit(() -> generateMap(stream * 100, stream * 100 + 100)
+                        .forEach((k, v) -> dao.upsert(Record.of(k, v)))));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        MetricsRegistry report;
+        try (DAO dao = TestDaoWrapper.create(new DAOConfig(replayed))) {
+            report = TraceReplayer.replay(trace, dao, Double.POSITIVE_INFINITY);
+
+            // Same keys, values are not recorded
+            Iterator<ByteBuffer> keys = new TreeMap<>(generateMap(0, STREAMS * 100)).keySet().iterator();
+            Iterator<Record> range = dao.range(null, null);
+            while (keys.hasNext()) {
+                assertEquals(keys.next(), range.next().getKey());
+            }
+            assertFalse(range.hasNext());
+        }
+        assertEquals((long) STREAMS, report.snapshot().get("replay.streams"));
+        assertEquals(STREAMS * 100L, report.snapshot().get("upsert.latency.count"));
+    }
+
+}